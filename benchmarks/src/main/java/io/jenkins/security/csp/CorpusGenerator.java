@@ -0,0 +1,206 @@
+package io.jenkins.security.csp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic Jenkins plugin source trees to benchmark the scanner with.
+ * The output only depends on the seed, so results of different runs and versions are comparable.
+ * <p>
+ * Each plugin contains Jelly views with many event handlers, script blocks, and {@code javascript:} URLs,
+ * Latin-1 encoded {@code .properties} files, minified JavaScript, and Java sources, as well as deep
+ * {@code node_modules} and {@code target} trees, which are skipped by the scanner.
+ * <p>
+ * Run {@code java -cp benchmarks/target/benchmarks.jar io.jenkins.security.csp.CorpusGenerator <dir> [<plugins>] [<seed>]}
+ * to write a corpus for manual runs of the scanner.
+ */
+public class CorpusGenerator {
+    static final long DEFAULT_SEED = 42;
+
+    private static final List<String> ELEMENTS = List.of("f:entry", "f:textbox", "f:checkbox", "f:section", "l:task", "div", "span", "a", "button", "table", "tr", "td");
+    private static final List<String> EVENTS = List.of("click", "change", "load", "mouseover", "keyup", "submit", "focus", "blur");
+    private static final List<String> WORDS = List.of("build", "job", "node", "agent", "config", "descriptor", "instance", "value", "field", "help", "check", "url", "name", "label", "status", "plugin");
+
+    private final Random random;
+
+    CorpusGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Writes {@code plugins} plugin source trees to {@code root}.
+     */
+    void generate(Path root, int plugins) throws IOException {
+        for (int i = 0; i < plugins; i++) {
+            final Path plugin = root.resolve("plugin" + i);
+            final String pkg = "io/jenkins/plugins/" + word() + i;
+            for (int j = 0; j < 20; j++) {
+                final Path views = plugin.resolve("src/main/resources/" + pkg + "/" + capitalize(word()) + j);
+                write(views.resolve("config.jelly"), jellyView(50 + random.nextInt(200)));
+                write(views.resolve("index.jelly"), jellyView(20 + random.nextInt(100)));
+                Files.write(views.resolve("config.properties"), properties(30 + random.nextInt(50)));
+                Files.write(views.resolve("config_de.properties"), properties(30 + random.nextInt(50)));
+                write(plugin.resolve("src/main/java/" + pkg + "/" + capitalize(word()) + j + ".java"), javaSource(100 + random.nextInt(400)));
+            }
+            for (int j = 0; j < 5; j++) {
+                write(plugin.resolve("src/main/webapp/js/" + word() + j + ".min.js"), minifiedJs(20_000 + random.nextInt(200_000)));
+            }
+            Path nodeModules = plugin.resolve("node_modules");
+            for (int depth = 0; depth < 8; depth++) {
+                nodeModules = nodeModules.resolve(word() + depth).resolve("node_modules");
+                write(nodeModules.getParent().resolve("index.js"), minifiedJs(5_000 + random.nextInt(20_000)));
+            }
+            final Path classes = plugin.resolve("target/classes/" + pkg);
+            for (int j = 0; j < 10; j++) {
+                write(classes.resolve("view" + j + "/config.jelly"), jellyView(50 + random.nextInt(100)));
+            }
+        }
+    }
+
+    /**
+     * Returns a Jelly view with {@code elements} elements, many of them with inline event handlers.
+     */
+    String jellyView(int elements) {
+        final StringBuilder sb = new StringBuilder("<?jelly escape-by-default='true'?>\n")
+                .append("<j:jelly xmlns:j=\"jelly:core\" xmlns:st=\"jelly:stapler\" xmlns:l=\"/lib/layout\" xmlns:f=\"/lib/form\">\n");
+        for (int i = 0; i < elements; i++) {
+            final String element = pick(ELEMENTS);
+            sb.append("  ".repeat(1 + random.nextInt(4))).append('<').append(element)
+                    .append(" field=\"").append(word()).append("\" title=\"${%").append(capitalize(word())).append("}\"");
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                    sb.append(" on").append(pick(EVENTS)).append("=\"").append(word()).append("(this, '").append(word()).append("'); return false\"");
+                    break;
+                case 2:
+                    sb.append(" href=\"javascript:").append(word()).append("()\"");
+                    break;
+                case 3:
+                    sb.append(" checkUrl=\"'${rootURL}/").append(word()).append("?value='+encodeURIComponent(this.value)\"");
+                    break;
+                default:
+                    sb.append(" class=\"jenkins-").append(word()).append("\" data-").append(word()).append("=\"${it.").append(word()).append("}\"");
+            }
+            sb.append(random.nextBoolean() ? "/>\n" : ">${it." + word() + "}</" + element + ">\n");
+            if (random.nextInt(40) == 0) {
+                sb.append("  <script>\n    var ").append(word()).append(" = '${it.").append(word()).append("}';\n  </script>\n");
+            }
+            if (random.nextInt(40) == 0) {
+                sb.append("  <st:adjunct includes=\"").append(pkg()).append(".").append(word()).append("\"/>\n");
+            }
+        }
+        return sb.append("</j:jelly>\n").toString();
+    }
+
+    /**
+     * Returns about {@code length} characters of minified JavaScript on a single line.
+     */
+    String minifiedJs(int length) {
+        final StringBuilder sb = new StringBuilder("/*! ").append(word()).append(" v1.0.0 | MIT */");
+        while (sb.length() < length) {
+            final String name = word().substring(0, 1 + random.nextInt(3));
+            switch (random.nextInt(10)) {
+                case 0:
+                    sb.append("function ").append(name).append("(e,t){return e.").append(word()).append("(t)||").append(random.nextInt(100)).append("}");
+                    break;
+                case 1:
+                    sb.append("var ").append(name).append("=document.getElementById(\"").append(word()).append("\");");
+                    break;
+                case 2:
+                    sb.append(name).append(".addEventListener(\"").append(pick(EVENTS)).append("\",function(e){e.preventDefault()});");
+                    break;
+                case 3:
+                    if (random.nextInt(20) == 0) {
+                        sb.append("window.eval(").append(name).append(");");
+                    } else {
+                        sb.append(name).append(".evaluate(\"").append(word()).append("\");");
+                    }
+                    break;
+                default:
+                    sb.append(name).append(".").append(word()).append("=").append(name).append(".").append(word()).append("||{};");
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * Returns a Latin-1 encoded {@code .properties} file, which is not valid UTF-8.
+     */
+    byte[] properties(int entries) {
+        final StringBuilder sb = new StringBuilder("# This file is under the MIT License by authors\n\n");
+        for (int i = 0; i < entries; i++) {
+            sb.append(capitalize(word())).append('.').append(word()).append('=');
+            switch (random.nextInt(6)) {
+                case 0:
+                    sb.append("Für <a href=\"").append(word()).append("\" onclick=\"return ").append(word()).append("()\">Änderungen</a> prüfen");
+                    break;
+                case 1:
+                    sb.append("Paramètres du ").append(word()).append(" \\\n    sélectionné");
+                    break;
+                default:
+                    sb.append("Größe des ").append(word()).append(": {0}");
+            }
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns a Java source file with about {@code lines} lines, some of them building HTML with inline JavaScript.
+     */
+    String javaSource(int lines) {
+        final StringBuilder sb = new StringBuilder("package ").append(pkg()).append(";\n\nimport hudson.Extension;\n\npublic class ")
+                .append(capitalize(word())).append(" {\n");
+        for (int i = 0; i < lines; i++) {
+            switch (random.nextInt(30)) {
+                case 0:
+                    sb.append("        out.write(\"<a href=\\\"#\\\" onclick=\\\"").append(word()).append("(); return false\\\">\" + ").append(word()).append(" + \"</a>\");\n");
+                    break;
+                case 1:
+                    sb.append("        return \"<script>").append(word()).append("('\" + ").append(word()).append(" + \"')</script>\";\n");
+                    break;
+                case 2:
+                    sb.append("        FormApply.applyResponse(\"notificationBar.show('").append(word()).append("')\");\n");
+                    break;
+                default:
+                    sb.append("        final String ").append(word()).append(i).append(" = ").append(word()).append(".get").append(capitalize(word())).append("();\n");
+            }
+        }
+        return sb.append("}\n").toString();
+    }
+
+    private String pkg() {
+        return "io.jenkins.plugins." + word();
+    }
+
+    private String word() {
+        return pick(WORDS);
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: CorpusGenerator <dir> [<plugins>] [<seed>]");
+            System.exit(1);
+        }
+        final int plugins = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        new CorpusGenerator(seed).generate(Path.of(args[0]), plugins);
+    }
+}
@@ -0,0 +1,68 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matches the patterns for each file type in typical content of that type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchRegexesBenchmark {
+    private static final File FILE = new File("benchmark");
+
+    @Param({ "jelly", "properties", "java", "js" })
+    public String type;
+
+    private Map<String, Pattern> patterns;
+    private String text;
+
+    @Setup
+    public void setup() {
+        final CorpusGenerator generator = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED);
+        switch (type) {
+            case "jelly":
+                patterns = Scanner.JELLY_PATTERNS;
+                text = generator.jellyView(200);
+                break;
+            case "properties":
+                patterns = Scanner.JELLY_PATTERNS;
+                text = new String(generator.properties(80), StandardCharsets.ISO_8859_1);
+                break;
+            case "java":
+                patterns = Scanner.JAVA_PATTERNS;
+                text = generator.javaSource(400);
+                break;
+            case "js":
+                patterns = Scanner.JS_PATTERNS;
+                text = generator.minifiedJs(200_000);
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+    }
+
+    @Benchmark
+    public List<Scanner.Match> matchRegexes() {
+        return Scanner.matchRegexes(patterns, text, FILE);
+    }
+}
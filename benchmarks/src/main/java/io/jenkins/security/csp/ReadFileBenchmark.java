@@ -0,0 +1,86 @@
+package io.jenkins.security.csp;
+
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads and decodes UTF-8 and Latin-1 files of different sizes, comparing {@link FileContent} with reading the file into
+ * a string, which the scanner used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadFileBenchmark {
+    @Param({ "utf-8", "latin-1" })
+    public String encoding;
+
+    @Param({ "4096", "1048576", "16777216" })
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        final CorpusGenerator generator = new CorpusGenerator(CorpusGenerator.DEFAULT_SEED);
+        final byte[] content;
+        if (encoding.equals("latin-1")) {
+            final StringBuilder sb = new StringBuilder();
+            while (sb.length() < size) {
+                sb.append(new String(generator.properties(100), StandardCharsets.ISO_8859_1));
+            }
+            content = sb.substring(0, size).getBytes(StandardCharsets.ISO_8859_1);
+        } else {
+            content = generator.minifiedJs(size).substring(0, size).getBytes(StandardCharsets.UTF_8);
+        }
+        file = Files.createTempFile("csp-scanner-benchmark", ".txt");
+        Files.write(file, content);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void fileContent(Blackhole blackhole) throws IOException {
+        FileContent.read(file).chunks(FileContent.DEFAULT_CHUNK_SIZE, (text, ownedStart, ownedEnd) -> {
+            // Decoding may be lazy, so access the content
+            for (int i = 0; i < text.length(); i += 64) {
+                blackhole.consume(text.charAt(i));
+            }
+        });
+    }
+
+    @Benchmark
+    public void readString(Blackhole blackhole) throws IOException {
+        String text;
+        try {
+            text = Files.readString(file);
+        } catch (MalformedInputException ex) {
+            text = Files.readString(file, StandardCharsets.ISO_8859_1);
+        }
+        for (int i = 0; i < text.length(); i += 64) {
+            blackhole.consume(text.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.jenkins.security.csp;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scans a generated corpus of plugin source trees end to end, like the command line does, but without printing matches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ScanBenchmark {
+    @Param({ "20" })
+    public int plugins;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private Path corpus;
+
+    @Setup
+    public void setup() throws IOException {
+        corpus = Files.createTempDirectory("csp-scanner-corpus");
+        new CorpusGenerator(CorpusGenerator.DEFAULT_SEED).generate(corpus, plugins);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walkFileTree(corpus, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public long scan() throws IOException {
+        final Options options = Options.parse("--threads", Integer.toString(threads), corpus.toString());
+        final AtomicLong matches = new AtomicLong();
+        final MatchWriter writer = (List<Scanner.Match> found) -> matches.addAndGet(found.size());
+        if (threads > 1) {
+            Scanner.scanInParallel(new ScanContext(options), writer);
+        } else {
+            Scanner.scanSequentially(new ScanContext(options), writer);
+        }
+        return matches.get();
+    }
+}
@@ -0,0 +1,138 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Scans the entries of plugin archives and other Java archives without extracting them, including nested archives like
+ * the libraries in {@code WEB-INF/lib/} of a plugin.
+ * Entries are reported as {@code foo.hpi!/WEB-INF/lib/foo.jar!/index.jelly}.
+ * Entries larger than the chunk size are scanned in chunks while they're read, like large files.
+ */
+class ArchiveScan {
+    private static final List<String> ARCHIVE_EXTENSIONS = List.of(".hpi", ".jpi", ".jar", ".war");
+
+    static boolean isArchive(String fileName) {
+        final String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        return ARCHIVE_EXTENSIONS.stream().anyMatch(lowerCase::endsWith);
+    }
+
+    private final ScanContext context;
+    private final MatchWriter matches;
+    private final MatchWriter javaMatches;
+
+    /**
+     * Whether a pattern exceeded the time budget in an entry, so that the results of the archive aren't cached.
+     */
+    private boolean incomplete;
+
+    private ArchiveScan(ScanContext context, MatchWriter matches, MatchWriter javaMatches) {
+        this.context = context;
+        this.matches = matches;
+        this.javaMatches = javaMatches;
+    }
+
+    /**
+     * Scans the entries of the archive {@code file}, or returns the cached matches if the archive is unchanged.
+     *
+     * @see Scanner#visitFile(File, ScanContext, MatchWriter, MatchWriter)
+     */
+    static void scan(File file, ScanContext context, MatchWriter matches, MatchWriter javaMatches) throws IOException {
+        final ScanCache cache = context.cache;
+        if (cache == null) {
+            new ArchiveScan(context, matches, javaMatches).scan(file);
+            return;
+        }
+
+        // Read attributes first, so that changes while reading the archive invalidate the cache entry
+        final Path path = file.toPath();
+        final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        List<Scanner.Match> cached = cache.get(path, attrs);
+        String digest = null;
+        if (cached == null) {
+            digest = FileContent.read(path).digest();
+            cached = cache.get(path, attrs, digest);
+        }
+        if (cached != null) {
+            final Map<Boolean, List<Scanner.Match>> byType = ScanCache.withFile(cached, file).stream()
+                    .collect(Collectors.partitioningBy(m -> m.file.getName().endsWith(".java")));
+            matches.write(byType.get(false));
+            javaMatches.write(byType.get(true));
+            return;
+        }
+
+        final List<Scanner.Match> results = new ArrayList<>();
+        final List<Scanner.Match> javaResults = new ArrayList<>();
+        final ArchiveScan scan = new ArchiveScan(context, found -> {
+            results.addAll(found);
+            matches.write(found);
+        }, found -> {
+            javaResults.addAll(found);
+            javaMatches.write(found);
+        });
+        scan.scan(file);
+        if (!scan.incomplete) {
+            results.addAll(javaResults);
+            cache.put(path, attrs, digest, results);
+        }
+    }
+
+    private void scan(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+            scan(new ZipInputStream(in), file.getPath());
+        }
+    }
+
+    private void scan(ZipInputStream in, String prefix) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            final File entryFile = new File(prefix + "!/" + entry.getName());
+            if (isArchive(entry.getName())) {
+                // Not closed, as that would close the outer archive
+                scan(new ZipInputStream(in), entryFile.getPath());
+                continue;
+            }
+            Scanner.visitFile(entryFile, patterns -> matchEntry(patterns, in, entryFile), matches, javaMatches);
+        }
+    }
+
+    /**
+     * Returns the matches of {@code patterns} in the current entry of {@code in}.
+     * Entries larger than the chunk size are scanned in chunks while they're read.
+     */
+    private List<Scanner.Match> matchEntry(Map<String, Pattern> patterns, InputStream in, File entryFile) throws IOException {
+        final byte[] head = in.readNBytes(context.options.chunkSize);
+        if (head.length < context.options.chunkSize) {
+            return matchContent(patterns, FileContent.of(ByteBuffer.wrap(head)), entryFile);
+        }
+        // Not looked up in the content index, as the digest is only known once the entry has been read
+        return Scanner.matchChunks(patterns, (chunkSize, consumer) -> FileContent.chunks(head, in, chunkSize, consumer), entryFile, context, () -> incomplete = true);
+    }
+
+    private List<Scanner.Match> matchContent(Map<String, Pattern> patterns, FileContent content, File entryFile) throws IOException {
+        // The digest identifies entries in which a pattern exceeded the time budget
+        final String digest = context.cache == null ? null : content.digest();
+        final List<Scanner.Match> results = Scanner.matchContent(patterns, content, digest, entryFile, context);
+        if (digest != null && context.incompleteContents.contains(digest)) {
+            incomplete = true;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,97 @@
+package io.jenkins.security.csp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the matches found in file contents by their SHA-256 digest, so that identical files (e.g. vendored
+ * libraries copied into many plugins) are only scanned once.
+ * Matches are stored without file, see {@link Scanner.Match#withFile(java.io.File)}.
+ * Incomplete results, where a pattern exceeded the time budget, are not reused.
+ */
+class ContentIndex {
+    private final Map<Map<String, Pattern>, Map<String, CompletableFuture<List<Scanner.Match>>>> results = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final Set<String> incompleteContents;
+
+    /**
+     * @param incompleteContents digests of contents in which a pattern exceeded the time budget
+     */
+    ContentIndex(Set<String> incompleteContents) {
+        this.incompleteContents = incompleteContents;
+    }
+
+    interface Computation {
+        List<Scanner.Match> compute() throws IOException;
+    }
+
+    /**
+     * Returns the matches of {@code patterns} in the content with the given digest.
+     * If that content hasn't been scanned yet, {@code computation} is called to scan it.
+     * If it is being scanned by another thread, this waits for the result.
+     * If a pattern exceeded the time budget in that content, {@code computation} is called again, so that the overrun is
+     * reported for this file too.
+     *
+     * @return the matches, without file
+     */
+    List<Scanner.Match> match(Map<String, Pattern> patterns, String digest, Computation computation) throws IOException {
+        lookups.incrementAndGet();
+        final Map<String, CompletableFuture<List<Scanner.Match>>> byDigest = results.computeIfAbsent(patterns, p -> new ConcurrentHashMap<>());
+        final CompletableFuture<List<Scanner.Match>> future = new CompletableFuture<>();
+        final CompletableFuture<List<Scanner.Match>> existing = byDigest.putIfAbsent(digest, future);
+        if (existing != null) {
+            final List<Scanner.Match> matches;
+            try {
+                matches = existing.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    throw new IOException("Failed to scan content with digest " + digest, ex.getCause());
+                }
+                throw ex;
+            }
+            return matches != null ? matches : withoutFile(computation.compute());
+        }
+        try {
+            final List<Scanner.Match> matches = withoutFile(computation.compute());
+            if (incompleteContents.contains(digest)) {
+                // Don't reuse incomplete results, and let threads waiting for them scan the content themselves
+                byDigest.remove(digest, future);
+                future.complete(null);
+            } else {
+                future.complete(matches);
+            }
+            return matches;
+        } catch (IOException | RuntimeException ex) {
+            // Let the next file with this content try again
+            byDigest.remove(digest, future);
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private static List<Scanner.Match> withoutFile(List<Scanner.Match> matches) {
+        return matches.stream().map(m -> m.withFile(null)).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the number of files looked up.
+     */
+    long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * Returns the number of distinct contents scanned.
+     */
+    long getUniqueContents() {
+        return results.values().stream().mapToLong(Map::size).sum();
+    }
+}
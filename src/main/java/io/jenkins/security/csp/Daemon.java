@@ -0,0 +1,353 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the matches of all files in memory and rescans files as they're created, modified, or deleted, see
+ * {@code --daemon}.
+ * <p>
+ * Current matches are served to {@link #client(int, Options.Format, OutputStream) clients} over a socket on the
+ * loopback interface, as Java 11 doesn't support Unix domain sockets.
+ * A client sends the name of the output format on a single line, and receives all current matches.
+ */
+class Daemon {
+    /**
+     * Editors often write files in several steps, so events arriving within this time are handled together.
+     */
+    private static final long QUIET_PERIOD_MILLIS = 50;
+
+    private final ScanContext context;
+    private final List<Root> roots = new ArrayList<>();
+    private final WatchService watchService;
+
+    /**
+     * Watched directories. Only accessed by the thread calling {@link #scanAll()} and {@link #watch()}.
+     */
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    Daemon(ScanContext context) throws IOException {
+        this.context = context;
+        for (String arg : context.options.paths) {
+            final Path path = Path.of(arg);
+            if (!Files.exists(path)) {
+                System.err.println("File or directory does not exist: " + path);
+                continue;
+            }
+            roots.add(new Root(path, Files.isDirectory(path)));
+        }
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Scans all files, serves matches on {@link Options#port} (or any free port), and updates them until interrupted.
+     */
+    static void run(ScanContext context) throws IOException, InterruptedException {
+        final Daemon daemon = new Daemon(context);
+        daemon.scanAll();
+        try (ServerSocket server = new ServerSocket(context.options.port, 50, InetAddress.getLoopbackAddress())) {
+            final Thread thread = new Thread(() -> daemon.serve(server), "csp-scanner-server");
+            thread.setDaemon(true);
+            thread.start();
+            System.err.println("Serving matches on port " + server.getLocalPort());
+            daemon.watch();
+        }
+    }
+
+    /**
+     * Prints the current matches of the daemon listening on {@code port}.
+     */
+    static void client(int port, Options.Format format, OutputStream out) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write((format.name() + "\n").getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            socket.getInputStream().transferTo(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Scans all roots and watches their directories, then replaces any previous matches.
+     * Clients are served the previous matches until the scan is done.
+     */
+    void scanAll() {
+        final Map<Root, Map<Path, FileMatches>> scanned = new HashMap<>();
+        for (Root root : roots) {
+            scanned.put(root, new ConcurrentHashMap<>());
+        }
+        for (Root root : roots) {
+            if (root.directory) {
+                scanTree(root.path, scanned::get);
+            } else {
+                // Files can only be watched through their directory
+                register(root.path.getParent() == null ? Path.of("") : root.path.getParent());
+                update(root.path, scanned::get);
+            }
+        }
+        for (Root root : roots) {
+            root.matches = scanned.get(root);
+        }
+    }
+
+    /**
+     * Scans and watches a directory tree, skipping the same directories as the command line.
+     *
+     * @param matches the matches of each root to update
+     */
+    private void scanTree(Path dir, Function<Root, Map<Path, FileMatches>> matches) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (Scanner.isExcludedDirectory(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    // Register before scanning, so changes during the scan aren't lost
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    update(file, matches);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to visit directory '" + dir + "':");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    private void register(Path dir) {
+        try {
+            directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+        } catch (IOException e) {
+            System.err.println("Failed to watch directory '" + dir + "':");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Handles file system events until {@link #close()} is called.
+     */
+    void watch() throws InterruptedException {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                final Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                do {
+                    final Path dir = directories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (dir != null) {
+                            changed.add(dir.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        // The directory was deleted
+                        directories.remove(key);
+                    }
+                    key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                if (overflow) {
+                    System.err.println("Too many changes, rescanning all files");
+                    scanAll();
+                    continue;
+                }
+                for (Path path : changed) {
+                    changed(path);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void changed(Path path) {
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            // Modification events of directories are caused by changes to their entries, which are reported separately
+            if (!directories.containsValue(path) && roots.stream().anyMatch(root -> root.directory && path.startsWith(root.path))) {
+                scanTree(path, root -> root.matches);
+            }
+        } else if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            update(path, root -> root.matches);
+        } else {
+            for (Root root : roots) {
+                root.matches.keySet().removeIf(file -> file.startsWith(path));
+            }
+            // Also stop watching deleted directories right away, in case they're created again
+            directories.entrySet().removeIf(e -> {
+                if (e.getValue().startsWith(path) && roots.stream().noneMatch(root -> !root.directory && e.getValue().equals(root.path.getParent()))) {
+                    e.getKey().cancel();
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Scans {@code file} and updates its matches in all roots containing it.
+     *
+     * @param matches the matches of each root to update
+     */
+    private void update(Path file, Function<Root, Map<Path, FileMatches>> matches) {
+        final List<Root> containing = roots.stream().filter(root -> root.contains(file)).collect(Collectors.toList());
+        if (containing.isEmpty()) {
+            return;
+        }
+        final List<Scanner.Match> fileMatches = new ArrayList<>();
+        final List<Scanner.Match> javaMatches = new ArrayList<>();
+        try {
+            // Archives specified as arguments are always scanned
+            final boolean archives = context.options.archives || containing.stream().anyMatch(root -> !root.directory);
+            Scanner.visitFile(file.toFile(), context, archives, fileMatches::addAll, javaMatches::addAll);
+        } catch (Exception e) {
+            System.err.println("Failed to visit file '" + file + "':");
+            e.printStackTrace(System.err);
+        }
+        for (Root root : containing) {
+            if (fileMatches.isEmpty() && javaMatches.isEmpty()) {
+                matches.apply(root).remove(file);
+            } else {
+                matches.apply(root).put(file, new FileMatches(fileMatches, javaMatches));
+            }
+        }
+    }
+
+    /**
+     * Answers client requests until the socket is closed.
+     * Each client is answered on its own thread, so a slow client doesn't hold up the others.
+     */
+    void serve(ServerSocket server) {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    System.err.println("Failed to accept request:");
+                    e.printStackTrace(System.err);
+                }
+                continue;
+            }
+            final Thread thread = new Thread(() -> answer(socket), "csp-scanner-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void answer(Socket socket) {
+        try (socket) {
+            final String format = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+            write(socket.getOutputStream(), format == null ? Options.Format.TEXT : Options.Format.valueOf(format.trim()));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Failed to answer request:");
+            e.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * Writes the current matches like the command line does when scanning with several threads and {@code --sort}.
+     */
+    void write(OutputStream out, Options.Format format) throws IOException {
+        final MatchWriter writer;
+        switch (format) {
+            case JSONL:
+                writer = new JsonLinesWriter(out);
+                break;
+            case SARIF:
+                writer = new SarifWriter(out, Scanner.titles());
+                break;
+            default:
+                final PrintStream printStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+                writer = matches -> Scanner.printMatches(printStream, matches);
+        }
+        for (Root root : roots) {
+            final List<Scanner.Match> matches = new ArrayList<>();
+            final List<Scanner.Match> javaMatches = new ArrayList<>();
+            root.matches.values().forEach(m -> {
+                matches.addAll(m.matches);
+                javaMatches.addAll(m.javaMatches);
+            });
+            if (format == Options.Format.TEXT) {
+                javaMatches.sort(Scanner.JAVA_MATCH_ORDER);
+                writer.write(javaMatches);
+            } else {
+                matches.addAll(javaMatches);
+            }
+            matches.sort(Scanner.MATCH_ORDER);
+            writer.write(matches);
+        }
+        writer.close();
+        out.flush();
+    }
+
+    /**
+     * Stops {@link #watch()}.
+     */
+    void close() throws IOException {
+        watchService.close();
+    }
+
+    private static class Root {
+        private final Path path;
+        private final boolean directory;
+        /**
+         * Replaced as a whole by {@link #scanAll()}.
+         */
+        private volatile Map<Path, FileMatches> matches = new ConcurrentHashMap<>();
+
+        private Root(Path path, boolean directory) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+        private boolean contains(Path file) {
+            return directory ? file.startsWith(path) : file.equals(path);
+        }
+    }
+
+    private static class FileMatches {
+        private final List<Scanner.Match> matches;
+        private final List<Scanner.Match> javaMatches;
+
+        private FileMatches(List<Scanner.Match> matches, List<Scanner.Match> javaMatches) {
+            this.matches = matches;
+            this.javaMatches = javaMatches;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.jenkins.security.csp;
+
+/**
+ * A view of a {@link CharSequence} that throws {@link DeadlineExceededException} once a deadline has passed.
+ * {@link java.util.regex.Matcher} has no timeout, but accesses its input all the time, so this stops runaway matches
+ * caused by catastrophic backtracking.
+ */
+class DeadlineCharSequence implements CharSequence {
+    /**
+     * Reading the clock is comparatively slow, so only every this many accesses check the deadline.
+     */
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final CharSequence text;
+    private final long deadline;
+    private int accesses;
+
+    /**
+     * @param deadline the deadline as {@link System#nanoTime()} value
+     */
+    DeadlineCharSequence(CharSequence text, long deadline) {
+        this.text = text;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++accesses == CHECK_INTERVAL) {
+            accesses = 0;
+            if (System.nanoTime() - deadline > 0) {
+                throw new DeadlineExceededException();
+            }
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    static class DeadlineExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private DeadlineExceededException() {
+            // Thrown deep inside Matcher, the stack trace isn't helpful
+            super("Deadline exceeded", null, false, false);
+        }
+    }
+}
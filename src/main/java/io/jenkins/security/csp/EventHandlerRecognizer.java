@@ -0,0 +1,227 @@
+package io.jenkins.security.csp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds inline event handler attributes like {@code onclick=} without using the large regular expression alternation of
+ * all event names, which backtracks heavily on long tags.
+ * Event names are looked up in a trie, and each tag or line is scanned only once.
+ */
+enum EventHandlerRecognizer implements PatternSet.Recognizer {
+    /**
+     * Equivalent to {@code <[^>]+\s(on(<event>))=[^>]+>}, case-insensitive, in Jelly views and similar files.
+     */
+    TAG {
+        @Override
+        public void find(CharSequence text, String title, PatternSet.MatchConsumer consumer) {
+            final int length = text.length();
+            int from = 0;
+            while (true) {
+                final int start = indexOf(text, '<', from);
+                if (start < 0) {
+                    return;
+                }
+                final int end = indexOf(text, '>', start + 1);
+                if (end < 0) {
+                    return;
+                }
+                if (hasEventHandler(text, start, end)) {
+                    consumer.accept(title, start, end + 1);
+                }
+                // Any other '<' before 'end' starts a shorter tag body, so it can't contain an event handler either
+                from = end + 1;
+                if (from >= length) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Whether the tag between {@code start} ('<') and {@code end} ('>') has an event handler attribute with a value.
+         */
+        private boolean hasEventHandler(CharSequence text, int start, int end) {
+            // At least one character between '<' and the whitespace before the attribute
+            for (int i = start + 2; i < end; i++) {
+                if (isWhitespace(text.charAt(i))) {
+                    final int equals = matchEventName(text, i + 1);
+                    // At least one character after '=' that isn't the closing '>'
+                    if (equals >= 0 && equals + 1 < end) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    },
+
+    /**
+     * Equivalent to {@code (?<![a-z0-9])(on(<event>))=.*?((?<!\\)")}, case-insensitive, in Java source files.
+     */
+    JAVA_STRING {
+        @Override
+        public void find(CharSequence text, String title, PatternSet.MatchConsumer consumer) {
+            final int length = text.length();
+            int from = 0;
+            while (from < length) {
+                final int start = indexOfIgnoreCase(text, 'o', from);
+                if (start < 0) {
+                    return;
+                }
+                if (start > 0 && isAsciiLetterOrDigit(text.charAt(start - 1))) {
+                    from = start + 1;
+                    continue;
+                }
+                final int equals = matchEventName(text, start);
+                if (equals < 0) {
+                    from = start + 1;
+                    continue;
+                }
+                int i = equals + 1;
+                while (i < length && !isLineTerminator(text.charAt(i)) && (text.charAt(i) != '"' || text.charAt(i - 1) == '\\')) {
+                    i++;
+                }
+                if (i < length && text.charAt(i) == '"') {
+                    consumer.accept(title, start, i + 1);
+                }
+                // If there was no closing quote, any other event handler on this line can't be closed either
+                from = i + 1;
+            }
+        }
+    };
+
+    /**
+     * Names of events that can be handled using inline {@code on<event>} attributes.
+     */
+    static final List<String> EVENT_NAMES = List.of(
+            "abort", "afterprint", "animationcancel", "animationend", "animationiteration", "animationstart",
+            "appinstalled", "auxclick", "beforeinput", "beforeinstallprompt", "beforematch", "beforeprint",
+            "beforetoggle", "beforeunload", "blur", "cancel", "canplay", "canplaythrough", "change", "click", "close",
+            "compositionend", "compositionstart", "compositionupdate", "contentvisibilityautostatechange",
+            "contextmenu", "copy", "cuechange", "cut", "dblclick", "devicemotion", "deviceorientation",
+            "deviceorientationabsolute", "DOMContentLoaded", "drag", "dragend", "dragenter", "dragleave", "dragover",
+            "dragstart", "drop", "durationchange", "emptied", "encrypted", "ended", "endEvent", "error", "focus",
+            "focusin", "focusout", "formdata", "fullscreenchange", "fullscreenerror", "gamepadconnected",
+            "gamepaddisconnected", "gotpointercapture", "hashchange", "input", "invalid", "keydown", "keypress",
+            "keyup", "languagechange", "load", "loadeddata", "loadedmetadata", "loadend", "loadstart",
+            "lostpointercapture", "message", "messageerror", "mousedown", "mouseenter", "mouseleave", "mousemove",
+            "mouseout", "mouseover", "mouseup", "mousewheel", "offline", "online", "pagehide", "pageshow", "paste",
+            "pause", "play", "playing", "pointercancel", "pointerdown", "pointerenter", "pointerleave",
+            "pointerlockchange", "pointerlockerror", "pointermove", "pointerout", "pointerover", "pointerup",
+            "popstate", "progress", "ratechange", "readystatechange", "rejectionhandled", "resize",
+            "resourcetimingbufferfull", "resume", "scroll", "scrollend", "securitypolicyviolation", "seeked",
+            "seeking", "select", "selectionchange", "slotchange", "stalled", "start", "stop", "storage", "submit",
+            "suspend", "timeupdate", "timeout", "toggle", "touchcancel", "touchend", "touchmove", "touchstart",
+            "transitioncancel", "transitionend", "transitionrun", "transitionstart", "unhandledrejection",
+            "visibilitychange", "volumechange", "waiting", "wheel");
+
+    private static final int[][] TRIE;
+    private static final boolean[] TERMINAL;
+
+    static {
+        final List<int[]> nodes = new ArrayList<>();
+        final List<Boolean> terminal = new ArrayList<>();
+        nodes.add(new int[26]);
+        terminal.add(false);
+        for (String name : EVENT_NAMES) {
+            int node = 0;
+            for (char c : name.toCharArray()) {
+                final int index = toLowerAsciiLetter(c) - 'a';
+                if (nodes.get(node)[index] == 0) {
+                    nodes.get(node)[index] = nodes.size();
+                    nodes.add(new int[26]);
+                    terminal.add(false);
+                }
+                node = nodes.get(node)[index];
+            }
+            terminal.set(node, true);
+        }
+        TRIE = nodes.toArray(new int[0][]);
+        TERMINAL = new boolean[terminal.size()];
+        for (int i = 0; i < TERMINAL.length; i++) {
+            TERMINAL[i] = terminal.get(i);
+        }
+    }
+
+    /**
+     * Matches {@code on<event>=} at {@code offset}, case-insensitive.
+     *
+     * @return the offset of the {@code =}, or {@code -1} if there's no match
+     */
+    private static int matchEventName(CharSequence text, int offset) {
+        final int length = text.length();
+        if (offset + 2 >= length || toLowerAsciiLetter(text.charAt(offset)) != 'o' || toLowerAsciiLetter(text.charAt(offset + 1)) != 'n') {
+            return -1;
+        }
+        int node = 0;
+        for (int i = offset + 2; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c == '=') {
+                return node != 0 && TERMINAL[node] ? i : -1;
+            }
+            final int letter = toLowerAsciiLetter(c);
+            if (letter < 0) {
+                return -1;
+            }
+            node = TRIE[node][letter - 'a'];
+            if (node == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Like {@link java.util.regex.Pattern#CASE_INSENSITIVE} without {@link java.util.regex.Pattern#UNICODE_CASE},
+     * only ASCII letters are folded.
+     *
+     * @return the lower case letter, or {@code -1} if {@code c} is not an ASCII letter
+     */
+    private static int toLowerAsciiLetter(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c + ('a' - 'A');
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return toLowerAsciiLetter(c) >= 0 || c >= '0' && c <= '9';
+    }
+
+    /**
+     * {@code \s} in {@link java.util.regex.Pattern}.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Characters not matched by {@code .} in {@link java.util.regex.Pattern}.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        final int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(CharSequence text, char lowerCase, int from) {
+        final int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (toLowerAsciiLetter(text.charAt(i)) == lowerCase) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,377 @@
+package io.jenkins.security.csp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reads files for scanning.
+ * <p>
+ * Small files are read into a buffer that is reused by the current thread, larger files are memory mapped.
+ * Files are decoded as UTF-8 if valid, otherwise as ISO-8859-1, per
+ * https://github.com/daniel-beck/csp-scanner/pull/10#issuecomment-2423384611 (technically only applies to .properties,
+ * but likely to be correct enough for all files). This is determined while decoding, so files are only read once.
+ * ASCII and ISO-8859-1 content is not copied at all, but accessed through a {@link CharSequence} view of the bytes.
+ * <p>
+ * Files larger than the chunk size are scanned in overlapping chunks to keep memory usage flat, each decoded separately
+ * into a buffer no larger than the chunk.
+ */
+class FileContent {
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Files larger than this are memory mapped rather than read into a buffer.
+     */
+    private static final int MAP_THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * Larger buffers are not kept for reuse by the current thread.
+     */
+    private static final int MAX_POOLED_CHARS = 4 * 1024 * 1024;
+
+    /**
+     * Each chunk starts with this many bytes of the previous chunk, so that lookbehinds at the start of its owned part
+     * see the preceding text rather than the start of the file.
+     */
+    private static final int CONTEXT = 256;
+
+    private static final ThreadLocal<ByteBuffer> BYTES = ThreadLocal.withInitial(() -> ByteBuffer.allocate(64 * 1024));
+    private static final ThreadLocal<CharBuffer> CHARS = ThreadLocal.withInitial(() -> CharBuffer.allocate(64 * 1024));
+
+    interface ChunkConsumer {
+        /**
+         * Receives the next chunk of a file.
+         * The chunk is only valid until this method returns.
+         *
+         * @param text the content of the chunk
+         * @param ownedStart the end of the context at the start of this chunk, which is owned by the previous chunk
+         * @param ownedEnd the start of the part of this chunk that is owned by the next chunk
+         */
+        void accept(CharSequence text, int ownedStart, int ownedEnd) throws IOException;
+    }
+
+    /**
+     * Content that is passed to a {@link ChunkConsumer} chunk by chunk.
+     */
+    interface ChunkSource {
+        /**
+         * Passes the decoded content to {@code consumer}, see {@link FileContent#chunks(int, ChunkConsumer)}.
+         *
+         * @return the size of the content in bytes
+         */
+        long chunks(int chunkSize, ChunkConsumer consumer) throws IOException;
+    }
+
+    private final ByteBuffer bytes;
+
+    private FileContent(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Wraps content that has already been read.
+     */
+    static FileContent of(ByteBuffer bytes) {
+        return new FileContent(bytes);
+    }
+
+    /**
+     * Reads {@code file}.
+     * The result is only valid until the next file is read by the current thread.
+     */
+    static FileContent read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + file);
+            }
+            return new FileContent(size > MAP_THRESHOLD ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : readFully(channel, (int) size));
+        }
+    }
+
+    /**
+     * Returns the size of the content in bytes.
+     */
+    int size() {
+        return bytes.remaining();
+    }
+
+    /**
+     * Returns the SHA-256 digest of the content as hex string.
+     */
+    String digest() {
+        return sha256(bytes.duplicate());
+    }
+
+    /**
+     * Returns the SHA-256 digest of the remaining {@code bytes} as hex string.
+     */
+    static String sha256(ByteBuffer bytes) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is supported by every Java implementation", e);
+        }
+        digest.update(bytes);
+        final StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Passes the decoded content to {@code consumer}.
+     * Content no larger than {@code chunkSize} is passed as a single chunk.
+     * Larger content is passed as a sequence of chunks of at most {@code chunkSize} bytes, each overlapping the next one
+     * by a quarter of {@code chunkSize}, and starting with a little context from the previous chunk.
+     * Matches longer than that overlap may be missed.
+     *
+     * @return the size of the content in bytes
+     */
+    long chunks(int chunkSize, ChunkConsumer consumer) throws IOException {
+        if (bytes.limit() <= chunkSize) {
+            final CharSequence text = decode(bytes);
+            consumer.accept(text, 0, text.length());
+        } else {
+            readChunks(bytes, chunkSize, consumer);
+        }
+        return bytes.limit();
+    }
+
+    /**
+     * Like {@link #chunks(int, ChunkConsumer)}, but reads the content from {@code in} while it is scanned rather than
+     * all of it at once, so that no more than {@code chunkSize} bytes are kept in memory.
+     *
+     * @param head the beginning of the content, already read from {@code in}, at most {@code chunkSize} bytes
+     * @return the size of the content in bytes
+     */
+    static long chunks(byte[] head, InputStream in, int chunkSize, ChunkConsumer consumer) throws IOException {
+        final ByteBuffer window = head.length == chunkSize ? ByteBuffer.wrap(head).position(head.length) : ByteBuffer.allocate(chunkSize).put(head);
+        final int overlap = chunkSize / 4;
+        final CharBuffer[] chars = { null };
+        long size = head.length;
+        int ownedStart = 0;
+        while (true) {
+            boolean eof = false;
+            while (window.hasRemaining() && !eof) {
+                final int read = in.read(window.array(), window.position(), window.remaining());
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    window.position(window.position() + read);
+                    size += read;
+                }
+            }
+            // The last bytes of a full window may be part of a UTF-8 sequence that continues in the next window
+            final int end = eof ? window.position() : boundary(window, window.position() - 1);
+            final int ownedEnd = eof ? end : boundary(window, end - overlap);
+            passChunk(window, 0, ownedStart, ownedEnd, end, chars, chunkSize, consumer);
+            if (eof) {
+                return size;
+            }
+            // Keep the context and overlap for the next chunk
+            final int start = boundary(window, ownedEnd - CONTEXT);
+            window.flip().position(start);
+            window.compact();
+            ownedStart = ownedEnd - start;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = BYTES.get();
+        if (buffer.capacity() <= size) {
+            // Room for one more byte, so reaching EOF doesn't require a larger buffer
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+            BYTES.set(buffer);
+        }
+        buffer.clear();
+        // The file may have grown since its size was determined, so read until EOF
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+                BYTES.set(buffer);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes {@code bytes} in a single pass.
+     * Leading ASCII content is copied without decoding. If there's no other content, the bytes are used directly.
+     */
+    static CharSequence decode(ByteBuffer bytes) {
+        final int length = bytes.limit();
+        final int ascii = countAscii(bytes, 0, length);
+        if (ascii == length) {
+            return new ByteCharSequence(bytes, 0, length);
+        }
+        final CharBuffer chars = charBuffer(length);
+        for (int i = 0; i < ascii; i++) {
+            chars.put((char) bytes.get(i));
+        }
+        if (decodeUtf8(bytes, ascii, length, chars)) {
+            return chars.flip();
+        }
+        return new ByteCharSequence(bytes, 0, length);
+    }
+
+    private static void readChunks(ByteBuffer bytes, int chunkSize, ChunkConsumer consumer) throws IOException {
+        final int length = bytes.limit();
+        final int overlap = chunkSize / 4;
+        // Only allocated for non-ASCII content, and then reused for all chunks
+        final CharBuffer[] chars = { null };
+        int start = 0;
+        int ownedStart = 0;
+        while (true) {
+            final int end = (long) start + chunkSize >= length ? length : boundary(bytes, start + chunkSize);
+            final int ownedEnd = end == length ? length : boundary(bytes, end - overlap);
+            passChunk(bytes, start, ownedStart, ownedEnd, end, chars, chunkSize, consumer);
+            if (ownedEnd == length) {
+                return;
+            }
+            start = boundary(bytes, ownedEnd - CONTEXT);
+            ownedStart = ownedEnd;
+        }
+    }
+
+    /**
+     * Decodes the chunk from {@code start} to {@code end} in a single pass and passes it to {@code consumer}.
+     * Each chunk is decoded as UTF-8 if valid, otherwise as ISO-8859-1.
+     */
+    private static void passChunk(ByteBuffer bytes, int start, int ownedStart, int ownedEnd, int end, CharBuffer[] chars, int chunkSize, ChunkConsumer consumer) throws IOException {
+        if (countAscii(bytes, start, end) < end - start) {
+            if (chars[0] == null) {
+                chars[0] = charBuffer(chunkSize);
+            }
+            final CharBuffer buffer = chars[0].clear();
+            if (decodeUtf8(bytes, start, ownedStart, buffer)) {
+                final int ownedStartChars = buffer.position();
+                if (decodeUtf8(bytes, ownedStart, ownedEnd, buffer)) {
+                    final int ownedEndChars = buffer.position();
+                    if (decodeUtf8(bytes, ownedEnd, end, buffer)) {
+                        consumer.accept(buffer.flip(), ownedStartChars, ownedEndChars);
+                        return;
+                    }
+                }
+            }
+        }
+        consumer.accept(new ByteCharSequence(bytes, start, end - start), ownedStart - start, ownedEnd - start);
+    }
+
+    /**
+     * Moves {@code offset} back so that it doesn't split a UTF-8 sequence or a CRLF line break.
+     * Content that isn't UTF-8 is split at most three bytes earlier than necessary.
+     */
+    private static int boundary(ByteBuffer bytes, int offset) {
+        int result = offset;
+        while (result > offset - 3 && (bytes.get(result) & 0xC0) == 0x80) {
+            result--;
+        }
+        if (bytes.get(result - 1) == '\r' && bytes.get(result) == '\n') {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of leading ASCII bytes from {@code start} to {@code end}.
+     */
+    private static int countAscii(ByteBuffer bytes, int start, int end) {
+        int i = start;
+        while (i < end && bytes.get(i) >= 0) {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes from {@code start} to {@code end} into {@code chars}.
+     *
+     * @return {@code false} if the bytes are not valid UTF-8
+     */
+    private static boolean decodeUtf8(ByteBuffer bytes, int start, int end, CharBuffer chars) {
+        final ByteBuffer in = bytes.duplicate();
+        in.limit(end).position(start);
+        final CharsetDecoder decoder = newDecoder();
+        return !decoder.decode(in, chars, true).isError() && !decoder.flush(chars).isError();
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * Returns an empty buffer for at least {@code capacity} characters, reused by the current thread if small enough.
+     */
+    private static CharBuffer charBuffer(int capacity) {
+        if (capacity > MAX_POOLED_CHARS) {
+            return CharBuffer.allocate(capacity);
+        }
+        CharBuffer buffer = CHARS.get();
+        if (buffer.capacity() < capacity) {
+            buffer = CharBuffer.allocate(Math.min(MAX_POOLED_CHARS, Integer.highestOneBit(capacity - 1) << 1));
+            CHARS.set(buffer);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * A view of ISO-8859-1 (or ASCII) encoded bytes as characters.
+     */
+    static class ByteCharSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        ByteCharSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return (char) (bytes.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+            }
+            return new ByteCharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            final byte[] result = new byte[length];
+            bytes.duplicate().position(offset).get(result);
+            return new String(result, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes each match as a JSON object on its own line, see <a href="https://jsonlines.org/">JSON Lines</a>:
+ * <pre>
+ * {"title":"Javascript scheme","file":"index.jelly","line":2,"column":1,"match":"&lt;a href='javascript:go()'&gt;"}
+ * </pre>
+ * Columns start at 1.
+ */
+class JsonLinesWriter implements MatchWriter {
+    private final Writer out;
+
+    JsonLinesWriter(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void write(List<Scanner.Match> matches) throws IOException {
+        for (Scanner.Match match : matches) {
+            out.write("{\"title\":");
+            out.write(quote(match.title));
+            out.write(",\"file\":");
+            out.write(quote(match.file.getPath()));
+            out.write(",\"line\":");
+            out.write(Long.toString(match.getLine()));
+            out.write(",\"column\":");
+            out.write(Integer.toString(match.getColumn()));
+            out.write(",\"match\":");
+            out.write(quote(match.match));
+            out.write("}\n");
+        }
+        // Results of each file are visible immediately
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Returns {@code value} as a JSON string literal.
+     */
+    static String quote(String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    // U+2028 and U+2029 are valid in JSON, but not in JavaScript before ES2019
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,100 @@
+package io.jenkins.security.csp;
+
+import java.util.Arrays;
+
+/**
+ * Table of line break offsets in a text, built in a single pass and then used to look up the line and column of
+ * any offset using binary search.
+ * Line breaks are what {@code \R} matches in {@link java.util.regex.Pattern}.
+ */
+class LineIndex {
+    private final CharSequence text;
+
+    /**
+     * Offsets of the first character of each line break, in ascending order.
+     */
+    private final int[] breaks;
+    private final int size;
+
+    LineIndex(CharSequence text) {
+        this.text = text;
+        int[] breaks = new int[16];
+        int size = 0;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (!isLineBreak(c)) {
+                continue;
+            }
+            if (size == breaks.length) {
+                breaks = Arrays.copyOf(breaks, size * 2);
+            }
+            breaks[size++] = i;
+            if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                // \r\n is a single line break
+                i++;
+            }
+        }
+        this.breaks = breaks;
+        this.size = size;
+    }
+
+    /**
+     * Returns the 1-based line number of the character at {@code offset}.
+     * This is the number of line breaks before {@code offset}, plus 1.
+     */
+    long getLine(int offset) {
+        return countBreaksBefore(offset) + 1;
+    }
+
+    /**
+     * Returns the 1-based column of the character at {@code offset}.
+     */
+    int getColumn(int offset) {
+        final int count = countBreaksBefore(offset);
+        if (count == 0) {
+            return offset + 1;
+        }
+        final int lastBreak = breaks[count - 1];
+        final int lineStart = text.charAt(lastBreak) == '\r' && lastBreak + 1 < offset && text.charAt(lastBreak + 1) == '\n' ? lastBreak + 2 : lastBreak + 1;
+        return offset - lineStart + 1;
+    }
+
+    /**
+     * Like {@link #getLine(int)}, but counts line breaks up to {@code offset} without building an index.
+     */
+    static long getLine(CharSequence text, int offset) {
+        long line = 1;
+        for (int i = 0; i < offset; i++) {
+            final char c = text.charAt(i);
+            if (isLineBreak(c)) {
+                line++;
+                if (c == '\r' && i + 1 < offset && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Like {@link #getColumn(int)}, but searches backwards for the start of the line without building an index.
+     */
+    static int getColumn(CharSequence text, int offset) {
+        int i = offset - 1;
+        while (i >= 0 && !isLineBreak(text.charAt(i))) {
+            i--;
+        }
+        return offset - i;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u000B' || c == '\u000C' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private int countBreaksBefore(int offset) {
+        int index = Arrays.binarySearch(breaks, 0, size, offset);
+        // Exact hit means a line break starts at offset, which is not before it; otherwise it's the insertion point
+        return index >= 0 ? index : -index - 1;
+    }
+}
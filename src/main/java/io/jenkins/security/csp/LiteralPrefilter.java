@@ -0,0 +1,162 @@
+package io.jenkins.security.csp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * Finds all occurrences of a set of ASCII literals in a single pass over a text, using an Aho-Corasick automaton.
+ * Matching is ASCII case-insensitive, like {@link java.util.regex.Pattern#CASE_INSENSITIVE} without
+ * {@link java.util.regex.Pattern#UNICODE_CASE}. For case-sensitive patterns this finds a superset of the occurrences.
+ */
+class LiteralPrefilter {
+    private static final int ALPHABET = 128;
+
+    private final int[] lengths;
+
+    /**
+     * Transitions of the automaton, {@code ALPHABET} entries per state. Failure transitions are resolved already.
+     */
+    private final int[] transitions;
+
+    /**
+     * IDs of the literals ending in each state, or {@code null} if there are none.
+     */
+    private final int[][] outputs;
+
+    LiteralPrefilter(List<String> literals) {
+        lengths = new int[literals.size()];
+        final List<int[]> gotos = new ArrayList<>();
+        final List<int[]> outs = new ArrayList<>();
+        gotos.add(newState());
+        outs.add(null);
+        for (int id = 0; id < literals.size(); id++) {
+            final String literal = literals.get(id).toLowerCase(Locale.ROOT);
+            if (literal.isEmpty() || !literal.chars().allMatch(c -> c < ALPHABET)) {
+                throw new IllegalArgumentException("Literals must be non-empty ASCII strings: " + literal);
+            }
+            lengths[id] = literal.length();
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                final int c = literal.charAt(i);
+                if (gotos.get(state)[c] < 0) {
+                    gotos.get(state)[c] = gotos.size();
+                    gotos.add(newState());
+                    outs.add(null);
+                }
+                state = gotos.get(state)[c];
+            }
+            outs.set(state, append(outs.get(state), id));
+        }
+
+        // Breadth-first computation of failure links, turning the trie into a DFA
+        final int[] fail = new int[gotos.size()];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            final int next = gotos.get(0)[c];
+            if (next < 0) {
+                gotos.get(0)[c] = 0;
+            } else {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            final int[] outFail = outs.get(fail[state]);
+            if (outFail != null) {
+                for (int id : outFail) {
+                    outs.set(state, append(outs.get(state), id));
+                }
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                final int next = gotos.get(state)[c];
+                if (next < 0) {
+                    gotos.get(state)[c] = gotos.get(fail[state])[c];
+                } else {
+                    fail[next] = gotos.get(fail[state])[c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        transitions = new int[gotos.size() * ALPHABET];
+        for (int state = 0; state < gotos.size(); state++) {
+            System.arraycopy(gotos.get(state), 0, transitions, state * ALPHABET, ALPHABET);
+        }
+        outputs = outs.toArray(new int[0][]);
+    }
+
+    /**
+     * Finds all occurrences of the literals in {@code text}.
+     *
+     * @return the start offsets of the occurrences for each literal, in ascending order, indexed by literal ID
+     */
+    Hits[] scan(CharSequence text) {
+        final Hits[] hits = new Hits[lengths.length];
+        for (int id = 0; id < hits.length; id++) {
+            hits[id] = new Hits();
+        }
+        int state = 0;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            int c = text.charAt(i);
+            if (c >= ALPHABET) {
+                // No literal contains non-ASCII characters
+                state = 0;
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            state = transitions[state * ALPHABET + c];
+            final int[] out = outputs[state];
+            if (out != null) {
+                for (int id : out) {
+                    hits[id].add(i - lengths[id] + 1);
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static int[] newState() {
+        final int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(int[] array, int value) {
+        if (array == null) {
+            return new int[] { value };
+        }
+        final int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * Start offsets of the occurrences of a literal, in ascending order.
+     */
+    static class Hits {
+        private int[] offsets = new int[0];
+        private int size;
+
+        private void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(8, size * 2));
+            }
+            offsets[size++] = offset;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return offsets[index];
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.jenkins.security.csp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives matches as they are found, see {@link Scanner#visitFile(java.io.File, ScanContext, MatchWriter, MatchWriter)}.
+ * Writers used with {@link ParallelScan} need to be thread-safe.
+ */
+@FunctionalInterface
+interface MatchWriter extends Closeable {
+    /**
+     * Writes the matches found in a file.
+     */
+    void write(List<Scanner.Match> matches) throws IOException;
+
+    /**
+     * Writes anything still pending. Does not close the underlying output stream.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
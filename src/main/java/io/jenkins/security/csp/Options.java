@@ -0,0 +1,183 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options of {@link Scanner}.
+ */
+class Options {
+    enum Format {
+        TEXT, JSONL, SARIF
+    }
+
+    static final String USAGE = "Usage: java -jar csp-scanner.jar [--threads <n>] [--chunk-size <bytes>] [--archives] [--cache-dir <dir>] [--dedup] [--group-duplicates] [--format text|jsonl|sarif] [--sort] [--metrics] [--time-budget <ms>] [--daemon [--port <port>]] <file-or-dir> [<file-or-dir> ...]\n"
+            + "       java -jar csp-scanner.jar --client --port <port> [--format text|jsonl|sarif]";
+
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    /**
+     * Number of threads used to walk directories and scan files. {@code 1} uses the sequential code path.
+     */
+    int threads = 1;
+
+    /**
+     * Files larger than this are scanned in overlapping chunks of this size.
+     */
+    int chunkSize = FileContent.DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Whether archives found in directories are scanned. Archives specified as arguments are always scanned.
+     */
+    boolean archives;
+
+    /**
+     * Directory containing the cache of previous results, or {@code null} to disable the cache.
+     */
+    File cacheDir;
+
+    /**
+     * Whether files with identical content are only scanned once.
+     */
+    boolean dedup;
+
+    /**
+     * Whether identical findings in different files are printed once, listing all files. Implies {@link #dedup}.
+     */
+    boolean groupDuplicates;
+
+    /**
+     * Output format.
+     */
+    Format format = Format.TEXT;
+
+    /**
+     * Whether matches are sorted before they're written, rather than written as they're found.
+     * Text output is always sorted.
+     */
+    boolean sort;
+
+    /**
+     * Whether time spent per pattern, file extension, and file is printed after the scan.
+     */
+    boolean metrics;
+
+    /**
+     * Maximum time in milliseconds each pattern may take per file, or {@code 0} for no limit.
+     */
+    long timeBudgetMillis;
+
+    /**
+     * Whether to keep running, rescanning files as they change, and serving matches to clients, see {@link Daemon}.
+     */
+    boolean daemon;
+
+    /**
+     * Whether to print the matches of a running daemon instead of scanning.
+     */
+    boolean client;
+
+    /**
+     * Port the daemon listens on, {@code 0} for any free port.
+     */
+    int port;
+
+    /**
+     * Files and directories to scan, in the order they were specified.
+     */
+    final List<String> paths = new ArrayList<>();
+
+    static Options parse(String... args) {
+        final Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("--threads")) {
+                options.threads = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if (arg.equals("--chunk-size")) {
+                options.chunkSize = parsePositiveInt(arg, value(args, ++i, arg));
+                if (options.chunkSize < MIN_CHUNK_SIZE) {
+                    throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes");
+                }
+            } else if (arg.equals("--archives")) {
+                options.archives = true;
+            } else if (arg.equals("--cache-dir")) {
+                options.cacheDir = new File(value(args, ++i, arg));
+            } else if (arg.equals("--dedup")) {
+                options.dedup = true;
+            } else if (arg.equals("--group-duplicates")) {
+                options.dedup = true;
+                options.groupDuplicates = true;
+            } else if (arg.equals("--format")) {
+                options.format = parseFormat(value(args, ++i, arg));
+            } else if (arg.equals("--sort")) {
+                options.sort = true;
+            } else if (arg.equals("--metrics")) {
+                options.metrics = true;
+            } else if (arg.equals("--time-budget")) {
+                options.timeBudgetMillis = parsePositiveInt(arg, value(args, ++i, arg));
+            } else if (arg.equals("--daemon")) {
+                options.daemon = true;
+            } else if (arg.equals("--client")) {
+                options.client = true;
+            } else if (arg.equals("--port")) {
+                options.port = parsePositiveInt(arg, value(args, ++i, arg));
+                if (options.port > 65535) {
+                    throw new IllegalArgumentException("Invalid port: " + options.port);
+                }
+            } else if (arg.equals("--")) {
+                options.paths.addAll(List.of(args).subList(i + 1, args.length));
+                break;
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                options.paths.add(arg);
+            }
+        }
+        if (options.client) {
+            if (options.port == 0) {
+                throw new IllegalArgumentException("--client requires --port");
+            }
+            return options;
+        }
+        if (options.paths.isEmpty()) {
+            throw new IllegalArgumentException("No file or directory specified");
+        }
+        // The daemon keeps running, so it must not accumulate state for content that is no longer present
+        if (options.daemon && (options.cacheDir != null || options.dedup || options.metrics || options.threads > 1)) {
+            throw new IllegalArgumentException("--cache-dir, --dedup, --group-duplicates, --metrics, and --threads are not supported with --daemon");
+        }
+        if (options.groupDuplicates && options.format != Format.TEXT) {
+            throw new IllegalArgumentException("--group-duplicates is only supported with text output");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for option: " + option);
+        }
+        return args[index];
+    }
+
+    private static Format parseFormat(String value) {
+        for (Format format : Format.values()) {
+            if (format.name().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown format: " + value);
+    }
+
+    private static int parsePositiveInt(String option, String value) {
+        try {
+            final int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ex) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Expected a positive number for option " + option + " but got: " + value);
+    }
+}
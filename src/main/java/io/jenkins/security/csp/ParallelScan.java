@@ -0,0 +1,108 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans a file or directory tree using a work-stealing {@link ForkJoinPool}.
+ * Directories are listed and files are scanned concurrently, writing the matches of each file as soon as it is scanned.
+ * Use a {@link SortingWriter} for deterministic output.
+ */
+class ParallelScan {
+    private final ScanContext context;
+    private final MatchWriter matches;
+    private final MatchWriter javaMatches;
+    private final RecursiveAction task;
+
+    /**
+     * @param root the file or directory to scan
+     * @param context the context of this scan
+     * @param matches receives matches, needs to be thread-safe
+     * @param javaMatches receives matches in {@code .java} files, needs to be thread-safe
+     */
+    ParallelScan(File root, ScanContext context, MatchWriter matches, MatchWriter javaMatches) {
+        this.context = context;
+        this.matches = matches;
+        this.javaMatches = javaMatches;
+        this.task = root.isDirectory() ? new DirectoryTask(root.toPath()) : new FileTask(root.toPath(), true);
+    }
+
+    /**
+     * Starts the scan in {@code pool} without waiting for its completion.
+     */
+    ParallelScan start(ForkJoinPool pool) {
+        pool.execute(task);
+        return this;
+    }
+
+    /**
+     * Waits for the scan to complete.
+     */
+    ParallelScan join() {
+        task.join();
+        return this;
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+
+        private DirectoryTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (Scanner.isExcludedDirectory(dir)) {
+                return;
+            }
+            final List<RecursiveAction> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    // Like Files#walkFileTree, do not follow symbolic links
+                    if (Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isDirectory()) {
+                        tasks.add(new DirectoryTask(entry));
+                    } else {
+                        tasks.add(new FileTask(entry, context.options.archives));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to visit directory '" + dir + "':");
+                e.printStackTrace(System.err);
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final boolean archives;
+
+        private FileTask(Path file, boolean archives) {
+            this.file = file;
+            this.archives = archives;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Scanner.visitFile(file.toFile(), context, archives, matches, javaMatches);
+            } catch (Exception e) {
+                System.err.println("Failed to visit file '" + file + "':");
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package io.jenkins.security.csp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a set of patterns against a text.
+ * <p>
+ * Patterns can declare a {@link RequiredLiteral} that every match contains.
+ * All literals are found in a single pass over the text using {@link LiteralPrefilter}, then each pattern is only
+ * applied if its literal occurs, and only starting close to the occurrences of that literal.
+ * This returns exactly the same matches as applying each pattern to the whole text in turn.
+ * <p>
+ * Patterns can also be replaced by a {@link Recognizer} that doesn't use regular expressions at all.
+ */
+class PatternSet {
+    private final List<Entry> entries = new ArrayList<>();
+    private final LiteralPrefilter prefilter;
+
+    /**
+     * @param patterns the patterns, by title. Matches are reported in the iteration order of this map.
+     * @param literals the literals required by patterns, by title. Patterns without a required literal are always applied.
+     * @param recognizers the recognizers replacing patterns, by title
+     */
+    PatternSet(Map<String, Pattern> patterns, Map<String, RequiredLiteral> literals, Map<String, Recognizer> recognizers) {
+        final List<String> literalTexts = new ArrayList<>();
+        patterns.forEach((title, pattern) -> {
+            final RequiredLiteral literal = literals.get(title);
+            if (recognizers.containsKey(title)) {
+                entries.add(new Entry(title, pattern, recognizers.get(title), null, -1));
+            } else if (literal == null) {
+                entries.add(new Entry(title, pattern, null, null, -1));
+            } else {
+                entries.add(new Entry(title, pattern, null, literal, literalTexts.size()));
+                literalTexts.add(literal.text);
+            }
+        });
+        prefilter = literalTexts.isEmpty() ? null : new LiteralPrefilter(literalTexts);
+    }
+
+    interface MatchConsumer {
+        void accept(String title, int start, int end);
+    }
+
+    /**
+     * Finds matches without using a regular expression.
+     * Implementations need to find exactly the same matches as the {@link Pattern} they replace.
+     */
+    interface Recognizer {
+        void find(CharSequence text, String title, MatchConsumer consumer);
+    }
+
+    /**
+     * Observes the application of each pattern to a text, see {@link ScanMetrics}.
+     */
+    interface Observer {
+        /**
+         * Returns the text the pattern with the given title is applied to, e.g. a {@link DeadlineCharSequence}.
+         */
+        CharSequence text(String title, CharSequence text);
+
+        /**
+         * Called after the pattern with the given title has been applied.
+         *
+         * @param exceeded whether the pattern was stopped by a {@link DeadlineCharSequence}, so matches may be missing
+         */
+        void applied(String title, long nanos, int matches, boolean exceeded);
+    }
+
+    /**
+     * Finds all matches of all patterns in {@code text}, reporting them pattern by pattern, in the order of the matches.
+     */
+    void find(CharSequence text, MatchConsumer consumer) {
+        find(text, consumer, null);
+    }
+
+    /**
+     * Like {@link #find(CharSequence, MatchConsumer)}, but also reports the application of each pattern to {@code observer}.
+     */
+    void find(CharSequence text, MatchConsumer consumer, Observer observer) {
+        final LiteralPrefilter.Hits[] hits = prefilter == null ? null : prefilter.scan(text);
+        for (Entry entry : entries) {
+            if (observer == null) {
+                find(entry, text, hits, consumer);
+                continue;
+            }
+            final CharSequence input = observer.text(entry.title, text);
+            final long started = System.nanoTime();
+            final int[] matches = { 0 };
+            boolean exceeded = false;
+            try {
+                find(entry, input, hits, (title, start, end) -> {
+                    matches[0]++;
+                    consumer.accept(title, start, end);
+                });
+            } catch (DeadlineCharSequence.DeadlineExceededException e) {
+                exceeded = true;
+            }
+            observer.applied(entry.title, System.nanoTime() - started, matches[0], exceeded);
+        }
+    }
+
+    private static void find(Entry entry, CharSequence text, LiteralPrefilter.Hits[] hits, MatchConsumer consumer) {
+        if (entry.recognizer != null) {
+            entry.recognizer.find(text, entry.title, consumer);
+            return;
+        }
+        final Matcher matcher = entry.pattern.matcher(text);
+        if (entry.literal == null) {
+            while (matcher.find()) {
+                consumer.accept(entry.title, matcher.start(), matcher.end());
+            }
+            return;
+        }
+
+        final LiteralPrefilter.Hits literalHits = hits[entry.literalId];
+        int hit = 0;
+        int from = 0;
+        while (from <= text.length()) {
+            // Any match starting at or after 'from' contains an occurrence of the literal starting at or after 'from'
+            while (hit < literalHits.size() && literalHits.get(hit) < from) {
+                hit++;
+            }
+            if (hit == literalHits.size()) {
+                break;
+            }
+            final int start = entry.literal.maxOffset < 0 ? from : Math.max(from, literalHits.get(hit) - entry.literal.maxOffset);
+            if (!matcher.find(start)) {
+                break;
+            }
+            consumer.accept(entry.title, matcher.start(), matcher.end());
+            from = matcher.end() == matcher.start() ? matcher.end() + 1 : matcher.end();
+        }
+    }
+
+    /**
+     * A literal (ASCII, case-insensitive) that every match of a pattern contains.
+     */
+    static class RequiredLiteral {
+        private final String text;
+
+        /**
+         * Maximum distance of the literal from the start of the match, or {@code -1} if unknown.
+         */
+        private final int maxOffset;
+
+        private RequiredLiteral(String text, int maxOffset) {
+            this.text = text;
+            this.maxOffset = maxOffset;
+        }
+
+        /**
+         * Every match contains {@code text} somewhere.
+         */
+        static RequiredLiteral contains(String text) {
+            return new RequiredLiteral(text, -1);
+        }
+
+        /**
+         * Every match starts with {@code text}.
+         */
+        static RequiredLiteral startsWith(String text) {
+            return new RequiredLiteral(text, 0);
+        }
+
+        /**
+         * Every match contains {@code text} no more than {@code maxOffset} characters from its start.
+         */
+        static RequiredLiteral startsWithin(String text, int maxOffset) {
+            return new RequiredLiteral(text, maxOffset);
+        }
+    }
+
+    private static class Entry {
+        private final String title;
+        private final Pattern pattern;
+        private final Recognizer recognizer;
+        private final RequiredLiteral literal;
+        private final int literalId;
+
+        private Entry(String title, Pattern pattern, Recognizer recognizer, RequiredLiteral literal, int literalId) {
+            this.title = title;
+            this.pattern = pattern;
+            this.recognizer = recognizer;
+            this.literal = literal;
+            this.literalId = literalId;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import static io.jenkins.security.csp.JsonLinesWriter.quote;
+
+/**
+ * Writes matches as a <a href="https://docs.oasis-open.org/sarif/sarif/v2.1.0/sarif-v2.1.0.html">SARIF 2.1.0</a> log,
+ * e.g. for GitHub code scanning.
+ * The log is written incrementally: results are written as they are found, and the log is completed on {@link #close()}.
+ * Pattern titles are used as rule IDs.
+ */
+class SarifWriter implements MatchWriter {
+    private final Writer out;
+    private boolean first = true;
+
+    /**
+     * @param titles the titles of all patterns, listed as rules
+     */
+    SarifWriter(OutputStream out, Collection<String> titles) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.out.write("{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{"
+                + "\"name\":\"csp-scanner\",\"informationUri\":\"https://github.com/daniel-beck/csp-scanner\",\"rules\":[");
+        boolean firstRule = true;
+        for (String title : titles) {
+            if (!firstRule) {
+                this.out.write(',');
+            }
+            firstRule = false;
+            this.out.write("{\"id\":" + quote(title) + ",\"shortDescription\":{\"text\":" + quote(title) + "}}");
+        }
+        this.out.write("]}},\"results\":[\n");
+        this.out.flush();
+    }
+
+    @Override
+    public synchronized void write(List<Scanner.Match> matches) throws IOException {
+        for (Scanner.Match match : matches) {
+            if (!first) {
+                out.write(",\n");
+            }
+            first = false;
+            out.write("{\"ruleId\":" + quote(match.title) + ",\"level\":\"warning\",\"message\":{\"text\":" + quote(match.title) + "},"
+                    + "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":" + quote(uri(match.file)) + "},"
+                    + "\"region\":{\"startLine\":" + match.getLine() + ",\"startColumn\":" + match.getColumn()
+                    + ",\"snippet\":{\"text\":" + quote(match.match) + "}}}}]}");
+        }
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.write("\n]}]}\n");
+        out.flush();
+    }
+
+    /**
+     * Returns the URI reference of {@code file}, relative if {@code file} is.
+     * Archive entries like {@code foo.hpi!/index.jelly} are kept as they are.
+     */
+    static String uri(File file) {
+        if (file.isAbsolute()) {
+            return file.toURI().toASCIIString();
+        }
+        try {
+            return new URI(null, null, file.getPath().replace(File.separatorChar, '/'), null).toASCIIString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the matches found in files, so that unchanged files don't need to be scanned again.
+ * Archives are cached as a whole, including the matches in all of their entries.
+ * <p>
+ * Files are considered unchanged if their size and modification time are unchanged, or if their content has the same
+ * SHA-256 digest as before (e.g. after a fresh checkout).
+ * The cache is discarded when the fingerprint of the patterns changes.
+ * It is rewritten completely on {@link #save()}, dropping entries not used in the last {@link #MAX_UNUSED_RUNS} runs
+ * and limiting the number of entries to the most recently used ones.
+ */
+class ScanCache {
+    static final String FILE_NAME = "scan-cache.bin";
+    static final int DEFAULT_MAX_ENTRIES = 1_000_000;
+
+    /**
+     * Entries not used by this many runs are removed.
+     */
+    static final int MAX_UNUSED_RUNS = 10;
+
+    private static final int MAGIC = 0x43535043;
+
+    /**
+     * Increment when the format changes, or scanning otherwise changes results without changing the patterns.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Modification times are not precise. If a file was modified this close to the time it was scanned, the cached
+     * entry is only used if the content is unchanged.
+     */
+    private static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000;
+
+    private final Path file;
+    private final String fingerprint;
+    private final int maxEntries;
+    private final int run;
+    private final long runStarted = System.currentTimeMillis();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ScanCache(Path file, String fingerprint, int maxEntries, int run) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.maxEntries = maxEntries;
+        this.run = run;
+    }
+
+    /**
+     * Loads the cache from {@code dir}.
+     * If there's no cache yet, or it was created with different patterns, the cache is initially empty.
+     *
+     * @param fingerprint identifies the patterns and settings that influence results
+     */
+    static ScanCache load(Path dir, String fingerprint, int maxEntries) throws IOException {
+        Files.createDirectories(dir);
+        final Path file = dir.resolve(FILE_NAME);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(fingerprint)) {
+                return new ScanCache(file, fingerprint, maxEntries, 0);
+            }
+            final ScanCache cache = new ScanCache(file, fingerprint, maxEntries, in.readInt() + 1);
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String path = readString(in);
+                cache.entries.put(path, Entry.read(in));
+            }
+            return cache;
+        } catch (NoSuchFileException ex) {
+            return new ScanCache(file, fingerprint, maxEntries, 0);
+        } catch (IOException ex) {
+            System.err.println("Failed to read cache '" + file + "', starting with an empty cache:");
+            ex.printStackTrace(System.err);
+            return new ScanCache(file, fingerprint, maxEntries, 0);
+        }
+    }
+
+    /**
+     * Returns the cached matches of {@code path} if its size and modification time are unchanged.
+     *
+     * @return the matches, with files relative to {@code path} (see {@link #withFile(List, File)}), or {@code null}
+     *         if not cached
+     */
+    List<Scanner.Match> get(Path path, BasicFileAttributes attrs) {
+        final String key = key(path);
+        final Entry entry = entries.get(key);
+        if (entry == null || entry.size != attrs.size() || entry.modified != attrs.lastModifiedTime().toMillis()
+                || entry.modified > entry.verified - MODIFICATION_TIME_GRANULARITY_MILLIS) {
+            return null;
+        }
+        entry.lastUsed = run;
+        return entry.matches;
+    }
+
+    /**
+     * Returns the cached matches of {@code path} if its content is unchanged.
+     *
+     * @return the matches, with files relative to {@code path} (see {@link #withFile(List, File)}), or {@code null}
+     *         if not cached
+     */
+    List<Scanner.Match> get(Path path, BasicFileAttributes attrs, String digest) {
+        final String key = key(path);
+        final Entry entry = entries.get(key);
+        if (entry == null || !entry.digest.equals(digest)) {
+            return null;
+        }
+        entries.put(key, new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), runStarted, digest, entry.matches, run));
+        return entry.matches;
+    }
+
+    /**
+     * Records the matches found in {@code path}.
+     *
+     * @param attrs the attributes of the file before it was read
+     * @param matches the matches found in the file, or in the entries of the archive
+     */
+    void put(Path path, BasicFileAttributes attrs, String digest, List<Scanner.Match> matches) {
+        final String prefix = path.toString();
+        final List<Scanner.Match> relative = matches.stream()
+                .map(m -> m.withFile(m.file.getPath().startsWith(prefix) && m.file.getPath().length() > prefix.length() ? new File(m.file.getPath().substring(prefix.length())) : null))
+                .collect(Collectors.toList());
+        entries.put(key(path), new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), runStarted, digest, Collections.unmodifiableList(relative), run));
+    }
+
+    /**
+     * Sets the file of cached matches.
+     * Matches in the entries of an archive are cached with the path of the entry relative to the archive, e.g.
+     * {@code !/WEB-INF/lib/foo.jar!/index.jelly}, and other matches without file.
+     */
+    static List<Scanner.Match> withFile(List<Scanner.Match> cached, File file) {
+        return cached.stream().map(m -> m.withFile(m.file == null ? file : new File(file.getPath() + m.file.getPath()))).collect(Collectors.toList());
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache, removing entries unused for too long and the least recently used entries beyond the maximum.
+     */
+    void save() throws IOException {
+        final List<Map.Entry<String, Entry>> retained = entries.entrySet().stream()
+                .filter(e -> run - e.getValue().lastUsed < MAX_UNUSED_RUNS)
+                .sorted(Comparator.comparingInt((Map.Entry<String, Entry> e) -> e.getValue().lastUsed).reversed())
+                .limit(maxEntries)
+                .collect(Collectors.toList());
+
+        final Path tmp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(run);
+                out.writeInt(retained.size());
+                for (Map.Entry<String, Entry> e : retained) {
+                    writeString(out, e.getKey());
+                    e.getValue().write(out);
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Like {@link DataOutputStream#writeUTF(String)}, but without length limit.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+
+        /**
+         * When the file was known to have this size and modification time.
+         */
+        private final long verified;
+        private final String digest;
+        private final List<Scanner.Match> matches;
+        private volatile int lastUsed;
+
+        private Entry(long size, long modified, long verified, String digest, List<Scanner.Match> matches, int lastUsed) {
+            this.size = size;
+            this.modified = modified;
+            this.verified = verified;
+            this.digest = digest;
+            this.matches = matches;
+            this.lastUsed = lastUsed;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeLong(verified);
+            out.writeUTF(digest);
+            out.writeInt(lastUsed);
+            out.writeInt(matches.size());
+            for (Scanner.Match match : matches) {
+                out.writeUTF(match.title);
+                writeString(out, match.file == null ? "" : match.file.getPath());
+                writeString(out, match.match);
+                out.writeLong(match.getLine());
+                out.writeInt(match.getColumn());
+            }
+        }
+
+        private static Entry read(DataInputStream in) throws IOException {
+            final long size = in.readLong();
+            final long modified = in.readLong();
+            final long verified = in.readLong();
+            final String digest = in.readUTF();
+            final int lastUsed = in.readInt();
+            final int count = in.readInt();
+            final List<Scanner.Match> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String title = in.readUTF();
+                final String file = readString(in);
+                matches.add(new Scanner.Match(title, readString(in), file.isEmpty() ? null : new File(file), in.readLong(), in.readInt()));
+            }
+            return new Entry(size, modified, verified, digest, Collections.unmodifiableList(matches), lastUsed);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.jenkins.security.csp;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State shared by all files scanned in one invocation of {@link Scanner}.
+ */
+class ScanContext {
+    final Options options;
+
+    /**
+     * The cache of previous results, or {@code null} if disabled.
+     */
+    final ScanCache cache;
+
+    /**
+     * The index of matches by content, or {@code null} if disabled.
+     */
+    final ContentIndex index;
+
+    /**
+     * Records metrics and enforces the time budget, or {@code null} if neither is enabled.
+     */
+    final ScanMetrics metrics;
+
+    /**
+     * Digests of contents in which a pattern exceeded the time budget, so that their results aren't cached or reused.
+     */
+    final Set<String> incompleteContents = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Limits the matches buffered in memory by all {@link SortingWriter}s.
+     */
+    final SortingWriter.MemoryLimit sortLimit = new SortingWriter.MemoryLimit(SortingWriter.DEFAULT_MAX_BUFFERED_MATCHES, SortingWriter.DEFAULT_MAX_BUFFERED_CHARS);
+
+    ScanContext(Options options) {
+        this(options, null);
+    }
+
+    ScanContext(Options options, ScanCache cache) {
+        this.options = options;
+        this.cache = cache;
+        this.index = options.dedup ? new ContentIndex(incompleteContents) : null;
+        this.metrics = options.metrics || options.timeBudgetMillis > 0 ? new ScanMetrics(options.timeBudgetMillis) : null;
+    }
+}
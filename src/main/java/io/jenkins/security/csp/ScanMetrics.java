@@ -0,0 +1,172 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time spent, bytes scanned, and matches found by pattern, by file extension, and by file, and enforces the
+ * time budget of each pattern per file.
+ * <p>
+ * Only files that are actually scanned are recorded, not those whose results are reused from the cache or the content
+ * index.
+ */
+class ScanMetrics {
+    static final int SLOWEST_FILES = 10;
+
+    private final long timeBudgetNanos;
+    private final Map<String, Totals> patterns = new TreeMap<>();
+    private final Map<String, Totals> extensions = new TreeMap<>();
+    private final PriorityQueue<FileScan> slowestFiles = new PriorityQueue<>(Comparator.comparingLong(f -> f.nanos));
+
+    /**
+     * @param timeBudgetMillis the maximum time each pattern may take per file, or {@code 0} for no limit
+     */
+    ScanMetrics(long timeBudgetMillis) {
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+    }
+
+    /**
+     * Starts scanning a file.
+     */
+    FileScan startFile(File file) {
+        return new FileScan(file);
+    }
+
+    private synchronized void record(FileScan scan) {
+        scan.patterns.forEach((title, pattern) -> patterns.computeIfAbsent(title, t -> new Totals()).add(scan.bytes, pattern.nanos, pattern.matches, pattern.exceeded));
+        extensions.computeIfAbsent(extension(scan.file.getName()), e -> new Totals()).add(scan.bytes, scan.nanos, scan.matches(), scan.exceeded());
+        slowestFiles.add(scan);
+        if (slowestFiles.size() > SLOWEST_FILES) {
+            slowestFiles.poll();
+        }
+    }
+
+    private static String extension(String fileName) {
+        final int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "(none)" : fileName.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Prints the recorded metrics.
+     */
+    synchronized void print(PrintStream out) {
+        out.println("== Metrics");
+        out.println();
+        print(out, "Pattern", patterns);
+        out.println();
+        print(out, "Extension", extensions);
+        out.println();
+        out.println("Slowest files:");
+        final List<FileScan> files = new ArrayList<>(slowestFiles);
+        files.sort(Comparator.comparingLong((FileScan f) -> f.nanos).reversed());
+        for (FileScan file : files) {
+            final Map.Entry<String, PatternTotals> slowest = file.patterns.entrySet().stream()
+                    .max(Comparator.comparingLong(e -> e.getValue().nanos)).orElse(null);
+            out.println(String.format(Locale.ROOT, "%10.1f ms %12d bytes  %s%s", millis(file.nanos), file.bytes, file.file,
+                    slowest == null ? "" : String.format(Locale.ROOT, " (slowest pattern: %s, %.1f ms)", slowest.getKey(), millis(slowest.getValue().nanos))));
+        }
+    }
+
+    private static void print(PrintStream out, String name, Map<String, Totals> totals) {
+        out.println(String.format(Locale.ROOT, "%-30s %8s %14s %8s %12s %9s", name, "Files", "Bytes", "Matches", "Time (ms)", "Exceeded"));
+        totals.forEach((key, t) -> out.println(String.format(Locale.ROOT, "%-30s %8d %14d %8d %12.1f %9d", key, t.files, t.bytes, t.matches, millis(t.nanos), t.exceeded)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class Totals {
+        private long files;
+        private long bytes;
+        private long nanos;
+        private long matches;
+        private long exceeded;
+
+        private void add(long bytes, long nanos, long matches, boolean exceeded) {
+            this.files++;
+            this.bytes += bytes;
+            this.nanos += nanos;
+            this.matches += matches;
+            if (exceeded) {
+                this.exceeded++;
+            }
+        }
+    }
+
+    private static class PatternTotals {
+        private long nanos;
+        private int matches;
+        private boolean exceeded;
+    }
+
+    /**
+     * The metrics of a single file, which may be scanned in several chunks. Not thread-safe.
+     */
+    class FileScan implements PatternSet.Observer {
+        private final File file;
+        private final long started = System.nanoTime();
+        private final Map<String, PatternTotals> patterns = new LinkedHashMap<>();
+        private long bytes;
+        private long nanos;
+
+        private FileScan(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public CharSequence text(String title, CharSequence text) {
+            if (timeBudgetNanos == 0) {
+                return text;
+            }
+            // The budget applies to all chunks of the file together
+            final PatternTotals pattern = patterns.get(title);
+            return new DeadlineCharSequence(text, System.nanoTime() + timeBudgetNanos - (pattern == null ? 0 : pattern.nanos));
+        }
+
+        @Override
+        public void applied(String title, long nanos, int matches, boolean exceeded) {
+            final PatternTotals pattern = patterns.computeIfAbsent(title, t -> new PatternTotals());
+            pattern.nanos += nanos;
+            pattern.matches += matches;
+            pattern.exceeded |= exceeded;
+        }
+
+        private long matches() {
+            return patterns.values().stream().mapToLong(p -> p.matches).sum();
+        }
+
+        /**
+         * Returns whether any pattern was stopped because it exceeded the time budget, so matches may be missing.
+         */
+        boolean exceeded() {
+            return patterns.values().stream().anyMatch(p -> p.exceeded);
+        }
+
+        /**
+         * Records the metrics of this file once it has been scanned, and reports patterns that exceeded the time budget.
+         *
+         * @param bytes the size of the file
+         */
+        void finish(long bytes) {
+            this.bytes = bytes;
+            nanos = System.nanoTime() - started;
+            patterns.forEach((title, pattern) -> {
+                if (pattern.exceeded) {
+                    System.err.println("Pattern '" + title + "' exceeded the time budget of " + TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos)
+                            + " ms in '" + file + "' and was stopped, some of its matches may be missing");
+                }
+            });
+            record(this);
+        }
+    }
+}
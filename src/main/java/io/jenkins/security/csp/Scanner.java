@@ -2,7 +2,8 @@ package io.jenkins.security.csp;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.MalformedInputException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -10,17 +11,22 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Scanner {
-    private static final String JS_EVENT_ATTRIBUTES = "(on(abort|afterprint|animationcancel|animationend|animationiteration|animationstart|appinstalled|auxclick|beforeinput|beforeinstallprompt|beforematch|beforeprint|beforetoggle|beforeunload|blur|cancel|canplay|canplaythrough|change|click|close|compositionend|compositionstart|compositionupdate|contentvisibilityautostatechange|contextmenu|copy|cuechange|cut|dblclick|devicemotion|deviceorientation|deviceorientationabsolute|DOMContentLoaded|drag|dragend|dragenter|dragleave|dragover|dragstart|drop|durationchange|emptied|encrypted|ended|endEvent|error|focus|focusin|focusout|formdata|fullscreenchange|fullscreenerror|gamepadconnected|gamepaddisconnected|gotpointercapture|hashchange|input|invalid|keydown|keypress|keyup|languagechange|load|loadeddata|loadedmetadata|loadend|loadstart|lostpointercapture|message|messageerror|mousedown|mouseenter|mouseleave|mousemove|mouseout|mouseover|mouseup|mousewheel|offline|online|pagehide|pageshow|paste|pause|play|playing|pointercancel|pointerdown|pointerenter|pointerleave|pointerlockchange|pointerlockerror|pointermove|pointerout|pointerover|pointerup|popstate|progress|ratechange|readystatechange|rejectionhandled|resize|resourcetimingbufferfull|resume|scroll|scrollend|securitypolicyviolation|seeked|seeking|select|selectionchange|slotchange|stalled|start|stop|storage|submit|suspend|timeupdate|timeout|toggle|touchcancel|touchend|touchmove|touchstart|transitioncancel|transitionend|transitionrun|transitionstart|unhandledrejection|visibilitychange|volumechange|waiting|wheel))";
+    private static final String JS_EVENT_ATTRIBUTES = "(on(" + String.join("|", EventHandlerRecognizer.EVENT_NAMES) + "))";
 
     /**
      * Patterns identified in .jelly files
@@ -43,72 +49,384 @@ public class Scanner {
             "FormApply#applyResponse", Pattern.compile("FormApply[.]applyResponse[(].*"),
             "Javascript scheme (Java)", Pattern.compile("\".*(?<![a-z0-9])javascript:.*?((?<!\\\\)\")", Pattern.CASE_INSENSITIVE));
 
+    /**
+     * Literals that every match of the pattern with the given title contains, see {@link PatternSet}.
+     * These need to be kept in sync with the patterns above.
+     */
+    private static final Map<String, PatternSet.RequiredLiteral> REQUIRED_LITERALS = Map.of(
+            "Inline Script Block", PatternSet.RequiredLiteral.startsWith("<script"),
+            "Legacy checkUrl", PatternSet.RequiredLiteral.startsWith("checkUrl="),
+            "Javascript scheme", PatternSet.RequiredLiteral.contains("javascript:"),
+            "(g)eval Call", PatternSet.RequiredLiteral.startsWithin("eval", 2),
+            "Inline Script Block (Java)", PatternSet.RequiredLiteral.startsWith("<script"),
+            "FormApply#applyResponse", PatternSet.RequiredLiteral.startsWith("FormApply.applyResponse("),
+            "Javascript scheme (Java)", PatternSet.RequiredLiteral.contains("javascript:"));
+
+    /**
+     * Faster implementations of the patterns with the given title, see {@link EventHandlerRecognizer}.
+     */
+    private static final Map<String, PatternSet.Recognizer> RECOGNIZERS = Map.of(
+            "Inline Event Handler", EventHandlerRecognizer.TAG,
+            "Inline Event Handler (Java)", EventHandlerRecognizer.JAVA_STRING);
+
+    private static final Map<Map<String, Pattern>, PatternSet> PATTERN_SETS = new ConcurrentHashMap<>();
+
     protected static class Match {
         protected final String title;
         protected final String match;
         protected final File file;
         private final long line;
+        private final int column;
 
-        private Match(String title, String match, File file, long line) {
+        Match(String title, String match, File file, long line, int column) {
             this.title = title;
             this.match = match;
             this.file = file;
             this.line = line;
+            this.column = column;
+        }
+
+        long getLine() {
+            return line;
+        }
+
+        int getColumn() {
+            return column;
+        }
+
+        Match withFile(File file) {
+            return new Match(title, match, file, line, column);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Match other = (Match) o;
+            return line == other.line && column == other.column && title.equals(other.title) && match.equals(other.match) && Objects.equals(file, other.file);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(title, match, file, line, column);
         }
     }
 
+    /**
+     * Order in which matches are printed: By the string {@code title + file + line}, then by the individual fields.
+     */
+    protected static final Comparator<Match> MATCH_ORDER = ((Comparator<Match>) Scanner::compareTitleFileLine)
+            .thenComparing((Match m) -> m.title)
+            .thenComparing(m -> m.file.getPath())
+            .thenComparingLong(Match::getLine)
+            .thenComparingInt(Match::getColumn)
+            .thenComparing(m -> m.match);
+
+    /**
+     * Order of matches in {@code .java} files when scanning in parallel. The sequential code path prints them as they are found.
+     */
+    static final Comparator<Match> JAVA_MATCH_ORDER = Comparator.comparing((Match m) -> m.file.getPath())
+            .thenComparingLong(Match::getLine)
+            .thenComparingInt(Match::getColumn)
+            .thenComparing(m -> m.title)
+            .thenComparing(m -> m.match);
+
+    /**
+     * Compares {@code a.title + a.file + a.line} with {@code b.title + b.file + b.line} without building these strings.
+     */
+    private static int compareTitleFileLine(Match a, Match b) {
+        final String aFile = String.valueOf(a.file);
+        final String bFile = String.valueOf(b.file);
+        final int aLength = a.title.length() + aFile.length() + digits(a.line);
+        final int bLength = b.title.length() + bFile.length() + digits(b.line);
+        for (int i = 0; i < Math.min(aLength, bLength); i++) {
+            final char aChar = charAt(a, aFile, i);
+            final char bChar = charAt(b, bFile, i);
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private static char charAt(Match match, String file, int index) {
+        if (index < match.title.length()) {
+            return match.title.charAt(index);
+        }
+        index -= match.title.length();
+        if (index < file.length()) {
+            return file.charAt(index);
+        }
+        index -= file.length();
+        long divisor = 1;
+        for (int i = digits(match.line) - 1; i > index; i--) {
+            divisor *= 10;
+        }
+        return (char) ('0' + match.line / divisor % 10);
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static final Set<Path> EXCLUDED_DIRECTORIES = Set.of(Path.of("work"), Path.of("target"), Path.of("node_modules"));
+
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.err.println("Usage: java -jar csp-scanner.jar <file-or-dir> [<file-or-dir> ...]");
+        final Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(Options.USAGE);
             System.exit(1);
+            return;
+        }
+
+        if (options.client) {
+            try {
+                Daemon.client(options.port, options.format, System.out);
+            } catch (IOException e) {
+                System.err.println("Failed to get matches from daemon on port " + options.port + ": " + e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        ScanCache cache = null;
+        if (options.cacheDir != null) {
+            try {
+                cache = ScanCache.load(options.cacheDir.toPath(), fingerprint(options), ScanCache.DEFAULT_MAX_ENTRIES);
+            } catch (IOException e) {
+                System.err.println("Failed to load cache from '" + options.cacheDir + "', continuing without cache:");
+                e.printStackTrace(System.err);
+            }
+        }
+        final ScanContext context = new ScanContext(options, cache);
+
+        if (options.daemon) {
+            try {
+                Daemon.run(context);
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Daemon failed:");
+                e.printStackTrace(System.err);
+                System.exit(1);
+            }
+            return;
+        }
+
+        try {
+            scan(context);
+        } catch (IOException e) {
+            System.err.println("Failed to write results:");
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+        if (options.metrics) {
+            context.metrics.print(System.err);
+        }
+        if (context.index != null) {
+            System.err.println("Scanned " + context.index.getUniqueContents() + " distinct contents of " + context.index.getLookups() + " files");
+        }
+
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                System.err.println("Failed to save cache to '" + options.cacheDir + "':");
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+
+    /**
+     * Scans all paths and writes the results in the format specified by the options.
+     */
+    private static void scan(ScanContext context) throws IOException {
+        final Options options = context.options;
+        // Grouping duplicates across all paths requires all matches
+        final List<Match> allMatches = new ArrayList<>();
+        final MatchWriter output;
+        switch (options.format) {
+            case JSONL:
+                output = new JsonLinesWriter(System.out);
+                break;
+            case SARIF:
+                output = new SarifWriter(System.out, titles());
+                break;
+            default:
+                output = options.groupDuplicates ? allMatches::addAll : matches -> printMatches(System.out, matches);
+        }
+        final MatchWriter writer = options.sort && options.format != Options.Format.TEXT ? new SortingWriter(output, MATCH_ORDER, context.sortLimit) : output;
+        if (options.threads > 1) {
+            scanInParallel(context, writer);
+        } else {
+            scanSequentially(context, writer);
+        }
+        if (writer != output) {
+            writer.close();
+        }
+        output.close();
+        if (options.groupDuplicates) {
+            printGroupedMatches(System.out, allMatches);
+        }
+    }
+
+    /**
+     * Where the matches in one of the paths are written.
+     * Text output is sorted per path, while other formats are written as the matches are found.
+     */
+    private static final class PathOutput {
+        private final MatchWriter matches;
+        private final MatchWriter javaMatches;
+
+        private PathOutput(ScanContext context, MatchWriter writer, boolean parallel) {
+            if (context.options.format == Options.Format.TEXT) {
+                // All paths share the memory limit, as they're all scanned at once when scanning in parallel
+                this.matches = new SortingWriter(writer, MATCH_ORDER, context.sortLimit);
+                this.javaMatches = parallel ? new SortingWriter(writer, JAVA_MATCH_ORDER, context.sortLimit) : writer;
+            } else {
+                this.matches = writer;
+                this.javaMatches = writer;
+            }
+        }
+
+        /**
+         * Writes the sorted matches once the path has been scanned.
+         */
+        private void close() throws IOException {
+            if (javaMatches instanceof SortingWriter) {
+                javaMatches.close();
+            }
+            if (matches instanceof SortingWriter) {
+                matches.close();
+            }
         }
+    }
 
-        Arrays.stream(args).forEach(arg -> {
+    static void scanSequentially(ScanContext context, MatchWriter writer) throws IOException {
+        for (String arg : context.options.paths) {
             File file = new File(arg);
 
             if (!file.exists()) {
                 System.err.println("File or directory does not exist: " + file);
-                return;
+                continue;
             }
 
+            final PathOutput output = new PathOutput(context, writer, false);
             if (file.isFile()) {
-                final HashSet<Match> matches = new HashSet<>();
                 try {
-                    visitFile(file, matches);
+                    visitFile(file, context, true, output.matches, output.javaMatches);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
-                printMatches(matches.stream().sorted(Comparator.comparing(u -> u.title + u.file + u.line)).collect(Collectors.toList()));
-                return;
+                output.close();
+                continue;
             }
 
             if (file.isDirectory()) {
-                final TheFileVisitor visitor = new TheFileVisitor();
+                final TheFileVisitor visitor = new TheFileVisitor(context, output);
                 try {
                     Files.walkFileTree(file.toPath(), visitor);
                 } catch (IOException e) {
                     System.err.println("Failed to visit directory '" + file + "':");
                     e.printStackTrace(System.err);
                 }
-                printMatches(visitor.matches.stream().sorted(Comparator.comparing(u -> u.title + u.file + u.line)).collect(Collectors.toList()));
-                return;
+                output.close();
+                continue;
             }
 
             System.err.println("Not a file or directory: " + file);
-        });
+        }
     }
 
-    private static String readFileToString(File file) throws IOException {
+    /**
+     * Scans all paths concurrently. Text output is written in the order of the arguments.
+     */
+    static void scanInParallel(ScanContext context, MatchWriter writer) throws IOException {
+        final Options options = context.options;
+        final ForkJoinPool pool = new ForkJoinPool(options.threads);
         try {
-            return Files.readString(file.toPath());
-        } catch (MalformedInputException ex) {
-            // re-try with Latin-1 per https://github.com/daniel-beck/csp-scanner/pull/10#issuecomment-2423384611
-            // Technically only applies to .properties, and this is used for all files, but likely to be correct enough.
-            return Files.readString(file.toPath(), StandardCharsets.ISO_8859_1);
+            final List<ParallelScan> scans = new ArrayList<>();
+            final List<PathOutput> outputs = new ArrayList<>();
+            for (String arg : options.paths) {
+                final File file = new File(arg);
+                final PathOutput output = new PathOutput(context, writer, true);
+                outputs.add(output);
+                scans.add(file.exists() ? new ParallelScan(file, context, output.matches, output.javaMatches).start(pool) : null);
+            }
+            for (int i = 0; i < scans.size(); i++) {
+                final ParallelScan scan = scans.get(i);
+                if (scan == null) {
+                    System.err.println("File or directory does not exist: " + options.paths.get(i));
+                    continue;
+                }
+                scan.join();
+                outputs.get(i).close();
+            }
+        } finally {
+            pool.shutdown();
         }
     }
 
-    private static void visitFile(File file, Set<Match> matches) throws IOException {
+    /**
+     * Scans a single file, if its type is supported.
+     *
+     * Archives are only scanned with {@link Options#archives}.
+     *
+     * @param file the file to scan
+     * @param context the context of this scan
+     * @param matches receives matches, which are printed sorted after the scan completes in text output
+     * @param javaMatches receives matches in {@code .java} files, which are printed as soon as they are found
+     */
+    static void visitFile(File file, ScanContext context, MatchWriter matches, MatchWriter javaMatches) throws IOException {
+        visitFile(file, context, context.options.archives, matches, javaMatches);
+    }
+
+    /**
+     * Scans a single file, if its type is supported.
+     *
+     * @param file the file to scan
+     * @param context the context of this scan
+     * @param archives whether to scan the file if it is an archive, e.g. because it was specified as an argument
+     * @param matches receives matches, which are printed sorted after the scan completes in text output
+     * @param javaMatches receives matches in {@code .java} files, which are printed as soon as they are found
+     */
+    static void visitFile(File file, ScanContext context, boolean archives, MatchWriter matches, MatchWriter javaMatches) throws IOException {
+        if (ArchiveScan.isArchive(file.getName())) {
+            if (!archives) {
+                return;
+            }
+            ArchiveScan.scan(file, context, matches, javaMatches);
+            return;
+        }
+        visitFile(file, patterns -> matchFile(patterns, file, context), matches, javaMatches);
+    }
+
+    interface ContentMatcher {
+        /**
+         * Returns the matches of {@code patterns} in the content of a file.
+         */
+        List<Match> match(Map<String, Pattern> patterns) throws IOException;
+    }
+
+    /**
+     * Scans a single file or archive entry, if its type is supported.
+     *
+     * @param file the file to scan, used to determine its type
+     * @param matcher matches patterns in the content of the file
+     * @param matches receives matches, which are printed sorted after the scan completes in text output
+     * @param javaMatches receives matches in {@code .java} files, which are printed as soon as they are found
+     */
+    static void visitFile(File file, ContentMatcher matcher, MatchWriter matches, MatchWriter javaMatches) throws IOException {
         final String fileName = file.getName();
         if (fileName.startsWith("update-center.json")) {
             return;
@@ -117,52 +435,199 @@ public class Scanner {
             return;
         }
         if (fileName.endsWith(".jelly") || fileName.endsWith(".html") || fileName.endsWith(".properties")) {
-            final String text = readFileToString(file);
-            matches.addAll(matchRegexes(JELLY_PATTERNS, text, file));
+            matches.write(matcher.match(JELLY_PATTERNS));
         }
 
         if (fileName.endsWith(".java")) {
-            final String text = readFileToString(file);
-            printMatches(matchRegexes(JAVA_PATTERNS, text, file));
+            javaMatches.write(matcher.match(JAVA_PATTERNS));
         }
 
         if (fileName.endsWith(".js")) {
-            final String text = readFileToString(file);
-            matches.addAll(matchRegexes(JS_PATTERNS, text, file));
+            matches.write(matcher.match(JS_PATTERNS));
         }
     }
 
-    private static void printMatches(List<Match> matches) {
-        matches.forEach(match -> {
-            System.out.println("== " + match.title);
-            System.out.println("File: " + match.file.toPath() + " +");
-            System.out.println("Line: " + match.line);
-            System.out.println("----");
-            System.out.println(match.match);
-            System.out.println("----");
-            System.out.println();
+    /**
+     * Returns the matches of {@code patterns} in {@code file}, from the cache if possible.
+     */
+    private static List<Match> matchFile(Map<String, Pattern> patterns, File file, ScanContext context) throws IOException {
+        final ScanCache cache = context.cache;
+        final Path path = file.toPath();
+        if (cache == null) {
+            return matchContent(patterns, FileContent.read(path), null, file, context);
+        }
+
+        // Read attributes first, so that changes while reading the file invalidate the cache entry
+        final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        List<Match> cached = cache.get(path, attrs);
+        if (cached != null) {
+            return ScanCache.withFile(cached, file);
+        }
+        final FileContent content = FileContent.read(path);
+        final String digest = content.digest();
+        cached = cache.get(path, attrs, digest);
+        if (cached != null) {
+            return ScanCache.withFile(cached, file);
+        }
+        final List<Match> results = matchContent(patterns, content, digest, file, context);
+        if (!context.incompleteContents.contains(digest)) {
+            cache.put(path, attrs, digest, results);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the matches of {@code patterns} in {@code content}, from the content index if enabled.
+     *
+     * @param digest the digest of {@code content} if already known, otherwise {@code null}
+     */
+    static List<Match> matchContent(Map<String, Pattern> patterns, FileContent content, String digest, File file, ScanContext context) throws IOException {
+        final ContentIndex index = context.index;
+        if (index == null) {
+            return matchChunks(patterns, content::chunks, file, context, digest == null ? null : () -> context.incompleteContents.add(digest));
+        }
+        final String contentDigest = digest == null ? content.digest() : digest;
+        return withFile(index.match(patterns, contentDigest, () -> matchChunks(patterns, content::chunks, file, context, () -> context.incompleteContents.add(contentDigest))), file);
+    }
+
+    private static List<Match> withFile(List<Match> matches, File file) {
+        return matches.stream().map(m -> m.withFile(file)).collect(Collectors.toList());
+    }
+
+    /**
+     * Matches {@code patterns} in {@code content}, chunk by chunk for large files.
+     *
+     * @param incomplete called if a pattern exceeds the time budget, so that the results aren't cached, or {@code null}
+     */
+    static List<Match> matchChunks(Map<String, Pattern> patterns, FileContent.ChunkSource content, File file, ScanContext context, Runnable incomplete) throws IOException {
+        final ScanMetrics.FileScan scan = context.metrics == null ? null : context.metrics.startFile(file);
+        // Collect by title so that matches are ordered by pattern, then offset, even if the file is read in chunks
+        final Map<String, List<Match>> results = new LinkedHashMap<>();
+        patterns.keySet().forEach(title -> results.put(title, new ArrayList<>()));
+        final long[] line = { 1 };
+        final int[] column = { 0 };
+        final long size = content.chunks(context.options.chunkSize, (text, ownedStart, ownedEnd) -> {
+            matchRegexes(patterns, text, ownedStart, ownedEnd, null, file, line[0], column[0], scan, match -> results.get(match.title).add(match));
+            if (ownedEnd < text.length()) {
+                // Position of the next chunk, only needed for files read in chunks
+                final long lines = LineIndex.getLine(text, ownedEnd) - LineIndex.getLine(text, ownedStart);
+                column[0] = lines == 0 ? column[0] + LineIndex.getColumn(text, ownedEnd) - LineIndex.getColumn(text, ownedStart) : LineIndex.getColumn(text, ownedEnd) - 1;
+                line[0] += lines;
+            }
         });
+        if (scan != null) {
+            scan.finish(size);
+            if (scan.exceeded() && incomplete != null) {
+                incomplete.run();
+            }
+        }
+        return results.values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the titles of all patterns, sorted.
+     */
+    static List<String> titles() {
+        return Stream.of(JELLY_PATTERNS, JAVA_PATTERNS, JS_PATTERNS)
+                .flatMap(patterns -> patterns.keySet().stream()).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Identifies the patterns and options that determine the matches found in a file, see {@link ScanCache}.
+     */
+    static String fingerprint(Options options) {
+        final StringBuilder fingerprint = new StringBuilder("chunk-size=").append(options.chunkSize).append('\n');
+        for (Map<String, Pattern> patterns : List.of(JELLY_PATTERNS, JAVA_PATTERNS, JS_PATTERNS)) {
+            patterns.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> fingerprint
+                    .append(e.getKey()).append('\t')
+                    .append(e.getValue().flags()).append('\t')
+                    .append(e.getValue().pattern()).append('\t')
+                    .append(RECOGNIZERS.get(e.getKey())).append('\n'));
+        }
+        return FileContent.sha256(ByteBuffer.wrap(fingerprint.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static void printMatches(PrintStream out, List<Match> matches) {
+        matches.forEach(match -> printMatch(out, match, List.of(match.file)));
     }
 
-    private static Pattern LINE_BREAK = Pattern.compile("\\R");
+    /**
+     * Prints matches with the same title, line, and text once, listing all files they're found in.
+     * Matches are printed in the order of their first occurrence.
+     */
+    static void printGroupedMatches(PrintStream out, List<Match> matches) {
+        final Map<List<Object>, List<File>> groups = new LinkedHashMap<>();
+        final Map<List<Object>, Match> firstMatches = new HashMap<>();
+        for (Match match : matches) {
+            final List<Object> key = List.of(match.title, match.line, match.match);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(match.file);
+            firstMatches.putIfAbsent(key, match);
+        }
+        groups.forEach((key, files) -> printMatch(out, firstMatches.get(key), files));
+    }
 
-    public static List<Match> matchRegexes(Map<String, Pattern> patterns, String text, File file) {
+    private static void printMatch(PrintStream out, Match match, List<File> files) {
+        out.println("== " + match.title);
+        files.forEach(file -> out.println("File: " + file.toPath() + " +"));
+        out.println("Line: " + match.line);
+        out.println("----");
+        out.println(match.match);
+        out.println("----");
+        out.println();
+    }
+
+    public static List<Match> matchRegexes(Map<String, Pattern> patterns, CharSequence text, File file) {
         List<Match> results = new ArrayList<>();
-        patterns.forEach((title, pattern) -> {
-            pattern.matcher(text).results().forEach(result -> {
-                final long line = LINE_BREAK.matcher(text.substring(0, result.start())).results().count() + 1;
-                results.add(new Match(title, result.group(), file, line));
-            });
-        });
+        matchRegexes(patterns, text, 0, text.length(), null, file, 1, 0, null, results::add);
         return results;
     }
 
+    /**
+     * Matches {@code patterns} in a chunk of a file.
+     * Matches reaching the end of {@code text} before the end of the file are not reported, as they may be cut short.
+     *
+     * @param ownedStart only matches starting at or after this offset are reported, earlier text is only context
+     * @param ownedEnd only matches starting before this offset are reported
+     * @param lineIndex the line index of {@code text}, or {@code null} to build it once needed
+     * @param line the line number at {@code ownedStart}
+     * @param column the number of characters on that line before {@code ownedStart}
+     * @param observer records metrics and enforces the time budget, or {@code null}
+     */
+    private static void matchRegexes(Map<String, Pattern> patterns, CharSequence text, int ownedStart, int ownedEnd, LineIndex lineIndex, File file, long line, int column, PatternSet.Observer observer, Consumer<Match> results) {
+        // Only built once the first match is found, and then shared by all patterns
+        final LineIndex[] index = { lineIndex };
+        final PatternSet patternSet = PATTERN_SETS.computeIfAbsent(patterns, p -> new PatternSet(p, REQUIRED_LITERALS, RECOGNIZERS));
+        patternSet.find(text, (title, start, end) -> {
+            if (start < ownedStart || start >= ownedEnd || end == text.length() && ownedEnd < text.length()) {
+                return;
+            }
+            if (index[0] == null) {
+                index[0] = new LineIndex(text);
+            }
+            final long lines = index[0].getLine(start) - index[0].getLine(ownedStart);
+            final int matchColumn = lines == 0 ? column + index[0].getColumn(start) - index[0].getColumn(ownedStart) + 1 : index[0].getColumn(start);
+            results.accept(new Match(title, text.subSequence(start, end).toString(), file, line + lines, matchColumn));
+        }, observer);
+    }
+
+    static boolean isExcludedDirectory(Path dir) {
+        return EXCLUDED_DIRECTORIES.contains(dir.getFileName());
+    }
+
     private static class TheFileVisitor extends SimpleFileVisitor<Path> {
-        private final Set<Match> matches = new HashSet<>();
+        private final ScanContext context;
+        private final PathOutput output;
+
+        private TheFileVisitor(ScanContext context, PathOutput output) {
+            this.context = context;
+            this.output = output;
+        }
+
+
         @Override
         public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
             try {
-                Scanner.visitFile(file.toFile(), matches);
+                Scanner.visitFile(file.toFile(), context, output.matches, output.javaMatches);
             } catch (Exception e) {
                 System.err.println("Failed to visit file '" + file + "':");
                 e.printStackTrace(System.err);
@@ -172,8 +637,7 @@ public class Scanner {
 
         @Override
         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-            final Path dirName = dir.getFileName();
-            if (Set.of(Path.of("work"), Path.of("target"), Path.of("node_modules")).contains(dirName)) {
+            if (isExcludedDirectory(dir)) {
                 return FileVisitResult.SKIP_SUBTREE;
             }
             return FileVisitResult.CONTINUE;
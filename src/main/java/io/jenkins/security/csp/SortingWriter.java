@@ -0,0 +1,301 @@
+package io.jenkins.security.csp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sorts matches before passing them on to another writer, on {@link #close()}.
+ * <p>
+ * To keep memory usage bounded, matches are buffered up to a {@link MemoryLimit}, then sorted and written to a temporary
+ * file. Writers can share a limit, in which case the writer buffering the most is written to a file once it is reached.
+ * On {@link #close()}, these sorted runs are merged.
+ * Equal consecutive matches are only passed on once.
+ */
+class SortingWriter implements MatchWriter {
+    static final int DEFAULT_MAX_BUFFERED_MATCHES = 100_000;
+    static final long DEFAULT_MAX_BUFFERED_CHARS = 32 * 1024 * 1024;
+
+    /**
+     * Maximum number of runs merged at once, to limit the number of open files.
+     */
+    static final int MAX_MERGED_RUNS = 64;
+
+    private static final int BATCH_SIZE = 1024;
+
+    private final MatchWriter downstream;
+    private final Comparator<Scanner.Match> order;
+    private final MemoryLimit limit;
+    private final List<Scanner.Match> buffer = new ArrayList<>();
+    private volatile long bufferedChars;
+    private final List<Path> runs = new ArrayList<>();
+
+    SortingWriter(MatchWriter downstream, Comparator<Scanner.Match> order) {
+        this(downstream, order, new MemoryLimit(DEFAULT_MAX_BUFFERED_MATCHES, DEFAULT_MAX_BUFFERED_CHARS));
+    }
+
+    SortingWriter(MatchWriter downstream, Comparator<Scanner.Match> order, int maxBufferedMatches, long maxBufferedChars) {
+        this(downstream, order, new MemoryLimit(maxBufferedMatches, maxBufferedChars));
+    }
+
+    /**
+     * @param limit the limit of matches buffered in memory, possibly shared with other writers
+     */
+    SortingWriter(MatchWriter downstream, Comparator<Scanner.Match> order, MemoryLimit limit) {
+        this.downstream = downstream;
+        this.order = order;
+        this.limit = limit;
+        limit.writers.add(this);
+    }
+
+    @Override
+    public void write(List<Scanner.Match> matches) throws IOException {
+        boolean exceeded = false;
+        synchronized (this) {
+            for (Scanner.Match match : matches) {
+                buffer.add(match);
+                bufferedChars += match.match.length();
+                if (limit.add(1, match.match.length())) {
+                    if (limit.largest() == this) {
+                        runs.add(writeRun());
+                    } else {
+                        exceeded = true;
+                    }
+                }
+            }
+        }
+        // Other writers are only locked while not holding this lock, to prevent deadlocks
+        while (exceeded && limit.isExceeded()) {
+            final SortingWriter largest = limit.largest();
+            if (largest == null) {
+                break;
+            }
+            largest.spill();
+        }
+    }
+
+    private synchronized void spill() throws IOException {
+        if (!buffer.isEmpty()) {
+            runs.add(writeRun());
+        }
+    }
+
+    /**
+     * Returns the number of sorted runs written to temporary files so far.
+     */
+    synchronized int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Passes on all matches in sorted order. Does not close the downstream writer.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            buffer.sort(order);
+            if (runs.isEmpty()) {
+                final Output output = new Output(downstream);
+                for (Scanner.Match match : buffer) {
+                    output.add(match);
+                }
+                output.flush();
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(writeRun());
+            }
+            while (runs.size() > MAX_MERGED_RUNS) {
+                // Merge the oldest runs into one, until the remaining ones can be merged at once
+                final List<Path> merged = new ArrayList<>(runs.subList(0, MAX_MERGED_RUNS));
+                final Path run = Files.createTempFile("csp-scanner", ".run");
+                runs.add(run);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                    merge(merged, match -> writeMatch(out, match));
+                }
+                runs.removeAll(merged);
+                for (Path path : merged) {
+                    Files.delete(path);
+                }
+            }
+            final Output output = new Output(downstream);
+            merge(runs, output::add);
+            output.flush();
+        } finally {
+            limit.release(buffer.size(), bufferedChars);
+            limit.writers.remove(this);
+            buffer.clear();
+            bufferedChars = 0;
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    private Path writeRun() throws IOException {
+        buffer.sort(order);
+        final Path run = Files.createTempFile("csp-scanner", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (Scanner.Match match : buffer) {
+                writeMatch(out, match);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        limit.release(buffer.size(), bufferedChars);
+        buffer.clear();
+        bufferedChars = 0;
+        return run;
+    }
+
+    private interface MatchConsumer {
+        void accept(Scanner.Match match) throws IOException;
+    }
+
+    /**
+     * Merges sorted runs.
+     */
+    private void merge(List<Path> runs, MatchConsumer consumer) throws IOException {
+        final List<DataInputStream> inputs = new ArrayList<>();
+        try {
+            final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> order.compare(a.match, b.match));
+            for (Path run : runs) {
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+                inputs.add(in);
+                final Scanner.Match match = readMatch(in);
+                if (match != null) {
+                    heads.add(new Head(in, match));
+                }
+            }
+            Head head;
+            while ((head = heads.poll()) != null) {
+                consumer.accept(head.match);
+                final Scanner.Match next = readMatch(head.in);
+                if (next != null) {
+                    heads.add(new Head(head.in, next));
+                }
+            }
+        } finally {
+            for (DataInputStream in : inputs) {
+                in.close();
+            }
+        }
+    }
+
+    private static void writeMatch(DataOutputStream out, Scanner.Match match) throws IOException {
+        ScanCache.writeString(out, match.title);
+        ScanCache.writeString(out, match.match);
+        ScanCache.writeString(out, match.file.getPath());
+        out.writeLong(match.getLine());
+        out.writeInt(match.getColumn());
+    }
+
+    /**
+     * Returns the next match in a run, or {@code null} at its end.
+     */
+    private static Scanner.Match readMatch(DataInputStream in) throws IOException {
+        final String title;
+        try {
+            title = ScanCache.readString(in);
+        } catch (EOFException e) {
+            return null;
+        }
+        return new Scanner.Match(title, ScanCache.readString(in), new File(ScanCache.readString(in)), in.readLong(), in.readInt());
+    }
+
+    /**
+     * Limits the number of matches, and the length of their text, buffered in memory by the writers sharing it.
+     */
+    static class MemoryLimit {
+        private final int maxMatches;
+        private final long maxChars;
+        private final Set<SortingWriter> writers = ConcurrentHashMap.newKeySet();
+        private long matches;
+        private long chars;
+
+        MemoryLimit(int maxMatches, long maxChars) {
+            this.maxMatches = maxMatches;
+            this.maxChars = maxChars;
+        }
+
+        /**
+         * Records buffered matches and returns whether the limit is now reached.
+         */
+        private synchronized boolean add(int matches, long chars) {
+            this.matches += matches;
+            this.chars += chars;
+            return isExceeded();
+        }
+
+        private synchronized void release(int matches, long chars) {
+            this.matches -= matches;
+            this.chars -= chars;
+        }
+
+        private synchronized boolean isExceeded() {
+            return matches >= maxMatches || chars >= maxChars;
+        }
+
+        /**
+         * Returns the writer buffering the longest text, or {@code null} if no writer buffers anything.
+         */
+        private SortingWriter largest() {
+            return writers.stream().filter(w -> w.bufferedChars > 0).max(Comparator.comparingLong(w -> w.bufferedChars)).orElse(null);
+        }
+    }
+
+    private static class Head {
+        private final DataInputStream in;
+        private final Scanner.Match match;
+
+        private Head(DataInputStream in, Scanner.Match match) {
+            this.in = in;
+            this.match = match;
+        }
+    }
+
+    /**
+     * Passes on matches in batches, skipping duplicates.
+     */
+    private static class Output {
+        private final MatchWriter downstream;
+        private final List<Scanner.Match> batch = new ArrayList<>();
+        private Scanner.Match previous;
+
+        private Output(MatchWriter downstream) {
+            this.downstream = downstream;
+        }
+
+        private void add(Scanner.Match match) throws IOException {
+            if (match.equals(previous)) {
+                return;
+            }
+            previous = match;
+            batch.add(match);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (!batch.isEmpty()) {
+                downstream.write(new ArrayList<>(batch));
+                batch.clear();
+            }
+        }
+    }
+}
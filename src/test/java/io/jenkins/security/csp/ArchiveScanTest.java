@@ -0,0 +1,166 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+public class ArchiveScanTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void isArchive() {
+        assertThat(ArchiveScan.isArchive("foo.hpi"), is(true));
+        assertThat(ArchiveScan.isArchive("foo.JPI"), is(true));
+        assertThat(ArchiveScan.isArchive("foo.jar"), is(true));
+        assertThat(ArchiveScan.isArchive("foo.war"), is(true));
+        assertThat(ArchiveScan.isArchive("foo.jelly"), is(false));
+        assertThat(ArchiveScan.isArchive("jar"), is(false));
+    }
+
+    @Test
+    public void nestedArchives() throws Exception {
+        final File hpi = tmp.newFile("foo.hpi");
+        Files.write(hpi.toPath(), zip(
+                "index.jelly", "<a href='javascript:one()'>".getBytes(StandardCharsets.UTF_8),
+                "WEB-INF/lib/foo.jar", zip(
+                        "index.jelly", "<p>\n<a href='javascript:two()'>".getBytes(StandardCharsets.UTF_8),
+                        "Foo.java", "\"<script>x</script>\"".getBytes(StandardCharsets.UTF_8),
+                        "Foo.class", new byte[] { (byte) 0xCA, (byte) 0xFE }),
+                "js/foo.js", "x = eval(x)".getBytes(StandardCharsets.UTF_8)));
+
+        final List<Scanner.Match> matches = new ArrayList<>();
+        final List<Scanner.Match> javaMatches = new ArrayList<>();
+        Scanner.visitFile(hpi, new ScanContext(new Options()), true, matches::addAll, javaMatches::addAll);
+
+        assertThat(describe(matches), containsInAnyOrder(
+                hpi + "!/index.jelly:1:Javascript scheme",
+                hpi + "!/WEB-INF/lib/foo.jar!/index.jelly:2:Javascript scheme",
+                hpi + "!/js/foo.js:1:(g)eval Call"));
+        assertThat(describe(javaMatches), containsInAnyOrder(
+                hpi + "!/WEB-INF/lib/foo.jar!/Foo.java:1:Inline Script Block (Java)"));
+    }
+
+    @Test
+    public void largeEntry() throws Exception {
+        final File jar = tmp.newFile("foo.jar");
+        final String content = "<p>\n".repeat(2 * 1024 * 1024) + "<a href='javascript:x()'>";
+        Files.write(jar.toPath(), zip(
+                "index.jelly", content.getBytes(StandardCharsets.UTF_8),
+                "js/foo.js", "x = eval(x)".getBytes(StandardCharsets.UTF_8)));
+
+        final List<Scanner.Match> matches = new ArrayList<>();
+        Scanner.visitFile(jar, new ScanContext(Options.parse("--chunk-size", "1048576", jar.getPath())), true, matches::addAll, matches::addAll);
+        assertThat(describe(matches), containsInAnyOrder(
+                jar + "!/index.jelly:" + (2 * 1024 * 1024 + 1) + ":Javascript scheme",
+                jar + "!/js/foo.js:1:(g)eval Call"));
+    }
+
+    @Test
+    public void cachedArchive() throws Exception {
+        final File hpi = tmp.newFile("foo.hpi");
+        Files.write(hpi.toPath(), zip(
+                "index.jelly", "<a href='javascript:one()'>".getBytes(StandardCharsets.UTF_8),
+                "WEB-INF/lib/foo.jar", zip("Foo.java", "\"<script>x</script>\"".getBytes(StandardCharsets.UTF_8))));
+        final FileTime modified = FileTime.from(System.currentTimeMillis() - 60_000, TimeUnit.MILLISECONDS);
+        Files.setLastModifiedTime(hpi.toPath(), modified);
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+        final List<String> expectedMatches = List.of(hpi + "!/index.jelly:1:Javascript scheme");
+        final List<String> expectedJavaMatches = List.of(hpi + "!/WEB-INF/lib/foo.jar!/Foo.java:1:Inline Script Block (Java)");
+
+        for (int i = 0; i < 2; i++) {
+            final ScanCache cache = ScanCache.load(cacheDir, "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES);
+            final List<Scanner.Match> matches = new ArrayList<>();
+            final List<Scanner.Match> javaMatches = new ArrayList<>();
+            Scanner.visitFile(hpi, new ScanContext(new Options(), cache), true, matches::addAll, javaMatches::addAll);
+            cache.save();
+            assertThat(describe(matches), is(expectedMatches));
+            assertThat(describe(javaMatches), is(expectedJavaMatches));
+
+            // Same size and modification time, so the archive isn't read again
+            Files.write(hpi.toPath(), new byte[(int) Files.size(hpi.toPath())]);
+            Files.setLastModifiedTime(hpi.toPath(), modified);
+        }
+    }
+
+    @Test
+    public void archivesInParallel() throws Exception {
+        final File root = tmp.newFolder("plugins");
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final File hpi = new File(root, "plugin" + i + ".hpi");
+            Files.write(hpi.toPath(), zip("WEB-INF/lib/plugin" + i + ".jar", zip("index.jelly", "<a href='javascript:x()'>".getBytes(StandardCharsets.UTF_8))));
+            expected.add(hpi + "!/WEB-INF/lib/plugin" + i + ".jar!/index.jelly:1:Javascript scheme");
+        }
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final List<Scanner.Match> matches = new ArrayList<>();
+            final SortingWriter sorted = new SortingWriter(matches::addAll, Scanner.MATCH_ORDER);
+            new ParallelScan(root, new ScanContext(Options.parse("--archives", root.getPath())), sorted, sorted).start(pool).join();
+            sorted.close();
+            assertThat(describe(matches), is(expected.stream().sorted().collect(Collectors.toList())));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void archivesOnlyAsArguments() throws Exception {
+        final File root = tmp.newFolder("plugins");
+        final File hpi = new File(root, "foo.hpi");
+        Files.write(hpi.toPath(), zip("index.jelly", "<a href='javascript:x()'>".getBytes(StandardCharsets.UTF_8)));
+        final ScanContext context = new ScanContext(Options.parse(root.getPath()));
+
+        final List<Scanner.Match> matches = new ArrayList<>();
+        Scanner.visitFile(hpi, context, matches::addAll, matches::addAll);
+        assertThat(matches, is(empty()));
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelScan(root, context, matches::addAll, matches::addAll).start(pool).join();
+            assertThat(matches, is(empty()));
+            new ParallelScan(hpi, context, matches::addAll, matches::addAll).start(pool).join();
+            assertThat(describe(matches), containsInAnyOrder(hpi + "!/index.jelly:1:Javascript scheme"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> describe(List<Scanner.Match> matches) {
+        return matches.stream().map(m -> m.file + ":" + m.getLine() + ":" + m.title).collect(Collectors.toList());
+    }
+
+    private static byte[] zip(Object... entries) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("META-INF/"));
+            out.closeEntry();
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry((String) entries[i]));
+                ((OutputStream) out).write((byte[]) entries[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
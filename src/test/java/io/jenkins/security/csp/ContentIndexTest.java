@@ -0,0 +1,104 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThrows;
+
+public class ContentIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void computesOncePerDigest() throws Exception {
+        final ContentIndex index = new ContentIndex(Set.of());
+        final AtomicInteger computations = new AtomicInteger();
+        final ContentIndex.Computation computation = () -> {
+            computations.incrementAndGet();
+            return Scanner.matchRegexes(Scanner.JS_PATTERNS, " eval(x)", new File("a.js"));
+        };
+        assertThat(index.match(Scanner.JS_PATTERNS, "digest", computation).get(0).file, nullValue());
+        assertThat(index.match(Scanner.JS_PATTERNS, "digest", computation).size(), is(1));
+        assertThat(index.match(Scanner.JELLY_PATTERNS, "digest", computation).size(), is(1));
+        assertThat(computations.get(), is(2));
+        assertThat(index.getLookups(), is(3L));
+        assertThat(index.getUniqueContents(), is(2L));
+    }
+
+    @Test
+    public void failuresAreRetried() throws Exception {
+        final ContentIndex index = new ContentIndex(Set.of());
+        assertThrows(IOException.class, () -> index.match(Scanner.JS_PATTERNS, "digest", () -> {
+            throw new IOException("failed");
+        }));
+        assertThat(index.match(Scanner.JS_PATTERNS, "digest", List::of).size(), is(0));
+    }
+
+    @Test
+    public void incompleteResultsAreNotReused() throws Exception {
+        final Set<String> incompleteContents = ConcurrentHashMap.newKeySet();
+        final ContentIndex index = new ContentIndex(incompleteContents);
+        final AtomicInteger computations = new AtomicInteger();
+        final ContentIndex.Computation computation = () -> {
+            computations.incrementAndGet();
+            incompleteContents.add("digest");
+            return List.of();
+        };
+        index.match(Scanner.JS_PATTERNS, "digest", computation);
+        index.match(Scanner.JS_PATTERNS, "digest", computation);
+        assertThat(computations.get(), is(2));
+        assertThat(index.getUniqueContents(), is(0L));
+    }
+
+    @Test
+    public void identicalFilesInDifferentRoots() throws Exception {
+        final List<File> roots = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final File root = tmp.newFolder("plugin" + i);
+            write(root, "src/main/webapp/prototype.js", "var x;\nx = eval(y);\n");
+            write(root, "src/main/resources/index.jelly", "<a href='javascript:plugin" + i + "()'>");
+            roots.add(root);
+        }
+
+        final Options options = new Options();
+        options.dedup = true;
+        final ScanContext context = new ScanContext(options);
+        final List<Scanner.Match> matches = new ArrayList<>();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (File root : roots) {
+                final SortingWriter sorted = new SortingWriter(matches::addAll, Scanner.MATCH_ORDER);
+                new ParallelScan(root, context, sorted, sorted).start(pool).join();
+                sorted.close();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(context.index.getLookups(), is(20L));
+        assertThat(context.index.getUniqueContents(), is(11L));
+        assertThat(matches.stream().filter(m -> m.title.equals("(g)eval Call")).map(m -> m.file).collect(Collectors.toList()),
+                contains(roots.stream().map(root -> new File(root, "src/main/webapp/prototype.js")).toArray()));
+    }
+
+    private static void write(File root, String path, String content) throws IOException {
+        final File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content);
+    }
+}
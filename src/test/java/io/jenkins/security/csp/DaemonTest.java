@@ -0,0 +1,152 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class DaemonTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Daemon daemon;
+    private Thread watcher;
+
+    @After
+    public void stop() throws Exception {
+        if (daemon != null) {
+            daemon.close();
+            watcher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Test
+    public void rescansChangedFiles() throws Exception {
+        final File root = tmp.newFolder("plugin");
+        write(root, "src/main/resources/index.jelly", "<a href='javascript:one()'>");
+        write(root, "src/main/java/Foo.java", "String s = \"<p onclick=\\\"go()\\\">\";");
+        write(root, "node_modules/foo/index.js", "x = eval(x)");
+        start(root);
+        assertThat(describe(), is(List.of("Foo.java:Inline Event Handler (Java)", "index.jelly:Javascript scheme")));
+
+        write(root, "src/main/resources/index.jelly", "<a href='javascript:one()'>\n<a href='javascript:two()'>");
+        awaitDescribe("Foo.java:Inline Event Handler (Java)", "index.jelly:Javascript scheme", "index.jelly:Javascript scheme");
+
+        write(root, "src/main/webapp/js/new/script.js", "x = eval(x)");
+        awaitDescribe("Foo.java:Inline Event Handler (Java)", "script.js:(g)eval Call", "index.jelly:Javascript scheme", "index.jelly:Javascript scheme");
+
+        write(root, "target/classes/index.jelly", "<a href='javascript:one()'>");
+        Files.delete(new File(root, "src/main/java/Foo.java").toPath());
+        awaitDescribe("script.js:(g)eval Call", "index.jelly:Javascript scheme", "index.jelly:Javascript scheme");
+
+        Files.delete(new File(root, "src/main/webapp/js/new/script.js").toPath());
+        Files.delete(new File(root, "src/main/webapp/js/new").toPath());
+        awaitDescribe("index.jelly:Javascript scheme", "index.jelly:Javascript scheme");
+    }
+
+    @Test
+    public void servesMatches() throws Exception {
+        final File root = tmp.newFolder("plugin");
+        write(root, "index.jelly", "<a href='javascript:one()'>");
+        start(root);
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final Thread thread = new Thread(() -> daemon.serve(server));
+            thread.start();
+            for (Options.Format format : Options.Format.values()) {
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                daemon.write(expected, format);
+                final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+                Daemon.client(server.getLocalPort(), format, actual);
+                assertThat(actual.toString(StandardCharsets.UTF_8), is(expected.toString(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void servesClientsConcurrently() throws Exception {
+        final File root = tmp.newFolder("plugin");
+        write(root, "index.jelly", "<a href='javascript:one()'>");
+        start(root);
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             Socket idle = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+            final Thread thread = new Thread(() -> daemon.serve(server));
+            thread.start();
+            // The idle client never sends its format
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            daemon.write(expected, Options.Format.TEXT);
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            Daemon.client(server.getLocalPort(), Options.Format.TEXT, actual);
+            assertThat(actual.toString(StandardCharsets.UTF_8), is(expected.toString(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void rejectsOptionsKeepingState() {
+        for (String option : new String[] { "--dedup", "--group-duplicates", "--metrics" }) {
+            assertThrows(IllegalArgumentException.class, () -> Options.parse("--daemon", option, "dir"));
+        }
+        assertThrows(IllegalArgumentException.class, () -> Options.parse("--daemon", "--cache-dir", "cache", "dir"));
+        assertThrows(IllegalArgumentException.class, () -> Options.parse("--daemon", "--threads", "4", "dir"));
+    }
+
+    private void start(File root) throws IOException {
+        daemon = new Daemon(new ScanContext(Options.parse("--daemon", root.getPath())));
+        daemon.scanAll();
+        watcher = new Thread(() -> {
+            try {
+                daemon.watch();
+            } catch (InterruptedException e) {
+                // stop
+            }
+        });
+        watcher.start();
+    }
+
+    private void awaitDescribe(String... expected) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!describe().equals(List.of(expected)) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(describe(), is(List.of(expected)));
+    }
+
+    /**
+     * Returns file names and titles in the order of the text output.
+     */
+    private List<String> describe() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        daemon.write(out, Options.Format.TEXT);
+        final String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        final List<String> result = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].startsWith("== ")) {
+                final String file = lines[i + 1].substring("File: ".length(), lines[i + 1].length() - " +".length());
+                result.add(new File(file).getName() + ":" + lines[i].substring("== ".length()));
+            }
+        }
+        return result;
+    }
+
+    private static void write(File root, String path, String content) throws IOException {
+        final File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content);
+    }
+}
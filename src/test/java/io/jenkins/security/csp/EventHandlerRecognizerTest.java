@@ -0,0 +1,83 @@
+package io.jenkins.security.csp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+public class EventHandlerRecognizerTest {
+    private static final String[] FRAGMENTS = {
+            "<", ">", "\"", "'", "\\", " ", "\t", "\n", "\r", "\u000B", "\u0085", "\u2028", "=", "x", "Z", "0", "é",
+            "on", "ON", "o", "n", "onclick", "onClick", "ONCLICK", "onload", "onloade", "onloadeddata", "onloadend",
+            "onDOMContentLoaded", "onendevent", "onfoo", "button", "<p ", "<a href=x ", "<div\n", " onclick=", "\tonblur=x>",
+    };
+
+    @Test
+    public void tags() {
+        assertThat(find(EventHandlerRecognizer.TAG, "<p onclick=\"go()\">x</p>"), contains("<p onclick=\"go()\">"));
+        assertThat(find(EventHandlerRecognizer.TAG, "<p\nclass='a'\n  onMouseOver=x\n>"), contains("<p\nclass='a'\n  onMouseOver=x\n>"));
+        assertThat(find(EventHandlerRecognizer.TAG, "<a <b onclick=x>"), contains("<a <b onclick=x>"));
+        assertThat(find(EventHandlerRecognizer.TAG, "<p onclick=>"), empty());
+        assertThat(find(EventHandlerRecognizer.TAG, "<p data-onclick=x>"), empty());
+        assertThat(find(EventHandlerRecognizer.TAG, "<p onfoo=x>"), empty());
+        assertThat(find(EventHandlerRecognizer.TAG, "< onclick=x>"), empty());
+    }
+
+    @Test
+    public void javaStrings() {
+        assertThat(find(EventHandlerRecognizer.JAVA_STRING, "\"<p onClick=\\\"doToggle(this)\\\">\""), contains("onClick=\\\"doToggle(this)\\\">\""));
+        assertThat(find(EventHandlerRecognizer.JAVA_STRING, "button=\"x\""), empty());
+        assertThat(find(EventHandlerRecognizer.JAVA_STRING, "onclick=\nx\""), empty());
+        assertThat(find(EventHandlerRecognizer.JAVA_STRING, "onclick=a\" onblur=b\""), contains("onclick=a\"", "onblur=b\""));
+    }
+
+    @Test
+    public void sameAsRegex() {
+        final Pattern tag = Scanner.JELLY_PATTERNS.get("Inline Event Handler");
+        final Pattern javaString = Scanner.JAVA_PATTERNS.get("Inline Event Handler (Java)");
+        final Random random = new Random(4711);
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertThat(text.toString(), find(EventHandlerRecognizer.TAG, text), is(find(tag, text)));
+            assertThat(text.toString(), find(EventHandlerRecognizer.JAVA_STRING, text), is(find(javaString, text)));
+        }
+    }
+
+    @Test
+    public void allEventNames() {
+        final Pattern tag = Scanner.JELLY_PATTERNS.get("Inline Event Handler");
+        final Pattern javaString = Scanner.JAVA_PATTERNS.get("Inline Event Handler (Java)");
+        for (String name : EventHandlerRecognizer.EVENT_NAMES) {
+            for (String text : List.of("<p on" + name + "=\"x\">", "<p on" + name.toUpperCase() + "=\"x\">", "<p on" + name + "x=\"x\">", "<p on" + name.substring(1) + "=\"x\">")) {
+                assertThat(text, find(EventHandlerRecognizer.TAG, text), is(find(tag, text)));
+                assertThat(text, find(EventHandlerRecognizer.JAVA_STRING, text), is(find(javaString, text)));
+            }
+        }
+    }
+
+    private static List<String> find(PatternSet.Recognizer recognizer, CharSequence text) {
+        final List<String> results = new ArrayList<>();
+        recognizer.find(text, "title", (title, start, end) -> results.add(text.subSequence(start, end).toString()));
+        return results;
+    }
+
+    private static List<String> find(Pattern pattern, CharSequence text) {
+        final List<String> results = new ArrayList<>();
+        final Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            results.add(matcher.group());
+        }
+        return results;
+    }
+}
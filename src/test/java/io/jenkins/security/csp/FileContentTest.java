@@ -0,0 +1,168 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FileContentTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ascii() throws Exception {
+        final File file = tmp.newFile("a.properties");
+        Files.write(file.toPath(), "key=value\n".getBytes(StandardCharsets.US_ASCII));
+        final CharSequence text = read(file);
+        assertThat(text, instanceOf(FileContent.ByteCharSequence.class));
+        assertThat(text.toString(), is("key=value\n"));
+    }
+
+    @Test
+    public void utf8() throws Exception {
+        final File file = tmp.newFile("a.properties");
+        Files.write(file.toPath(), "key=välue ☃\n".getBytes(StandardCharsets.UTF_8));
+        final CharSequence text = read(file);
+        assertThat(text, not(instanceOf(FileContent.ByteCharSequence.class)));
+        assertThat(text.toString(), is("key=välue ☃\n"));
+    }
+
+    @Test
+    public void latin1() throws Exception {
+        final File file = tmp.newFile("a.properties");
+        Files.write(file.toPath(), "key=välue\n".getBytes(StandardCharsets.ISO_8859_1));
+        final CharSequence text = read(file);
+        assertThat(text, instanceOf(FileContent.ByteCharSequence.class));
+        assertThat(text.toString(), is("key=välue\n"));
+        assertThat(text.subSequence(5, 10).toString(), is("älue\n"));
+    }
+
+    @Test
+    public void chunks() throws Exception {
+        for (String suffix : List.of("", "ä", "☃")) {
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                content.append("<p>line ").append(i).append(suffix).append("</p>").append(i % 3 == 0 ? "\r\n" : "\n");
+                if (i % 7 == 0) {
+                    content.append("  <a href='javascript:go(").append(i).append(")'>").append(suffix).append("</a>\n");
+                }
+                if (i % 11 == 0) {
+                    content.append("<script>go(").append(i).append(")</script><p onclick=\"x\">\n");
+                }
+            }
+            final File file = tmp.newFile("index" + suffix.hashCode() + ".jelly");
+            Files.writeString(file.toPath(), content);
+
+            final Options whole = new Options();
+            final Options chunked = new Options();
+            chunked.chunkSize = 1024;
+            assertThat(describe(scan(file, chunked)), is(describe(scan(file, whole))));
+            assertThat(scan(file, whole).size(), is(286 + 182 + 182));
+        }
+    }
+
+    @Test
+    public void chunkLayout() throws Exception {
+        for (String line : List.of("<p>line</p>\r\n", "<p>☃</p>\r\n")) {
+            final File file = tmp.newFile("index" + line.hashCode() + ".jelly");
+            final String content = line.repeat(1000);
+            Files.writeString(file.toPath(), content);
+            final StringBuilder owned = new StringBuilder();
+            FileContent.read(file.toPath()).chunks(1024, (text, ownedStart, ownedEnd) -> {
+                assertThat(text.length() <= 1024, is(true));
+                owned.append(text.subSequence(ownedStart, ownedEnd));
+            });
+            assertThat(owned.toString(), is(content));
+
+            final StringBuilder streamed = new StringBuilder();
+            final InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+            final long size = FileContent.chunks(in.readNBytes(1024), in, 1024, (text, ownedStart, ownedEnd) -> {
+                assertThat(text.length() <= 1024, is(true));
+                streamed.append(text.subSequence(ownedStart, ownedEnd));
+            });
+            assertThat(streamed.toString(), is(content));
+            assertThat(size, is((long) content.getBytes(StandardCharsets.UTF_8).length));
+        }
+    }
+
+    @Test
+    public void lookbehindAtChunkStart() throws Exception {
+        final Options chunked = new Options();
+        chunked.chunkSize = 1024;
+        for (String prefix : List.of("x", " ")) {
+            // Place the character checked by the lookbehind at every offset around the start of the second chunk
+            for (int i = 1000; i < 1100; i++) {
+                final File file = tmp.newFile("Foo" + i + prefix.trim() + ".java");
+                Files.writeString(file.toPath(), "/".repeat(i) + prefix + "onclick=\"a\";");
+                assertThat(describe(scan(file, chunked)), is(describe(scan(file, new Options()))));
+            }
+        }
+    }
+
+    @Test
+    public void matchesLongerThanOverlap() throws Exception {
+        final File file = tmp.newFile("index.jelly");
+        Files.writeString(file.toPath(), "<p>\n".repeat(200) + "<script>" + "x".repeat(2000) + "</script>\n<script>go()</script>\n");
+        final Options chunked = new Options();
+        chunked.chunkSize = 1024;
+        assertThat(scan(file, new Options()).size(), is(2));
+        // Missed rather than cut short at the end of a chunk
+        assertThat(describe(scan(file, chunked)), is(List.of("Inline Script Block:202:1:<script>go()</script>")));
+    }
+
+    @Test
+    public void mapped() throws Exception {
+        final File file = tmp.newFile("large.js");
+        final StringBuilder content = new StringBuilder();
+        while (content.length() < 5 * 1024 * 1024) {
+            content.append("var x = 1; // ä\n");
+        }
+        content.append("eval(x);\n");
+        Files.writeString(file.toPath(), content, StandardCharsets.ISO_8859_1);
+        final List<Scanner.Match> matches = scan(file, new Options());
+        assertThat(matches.size(), is(1));
+        assertThat(matches.get(0).match, is("\neval("));
+    }
+
+    @Test
+    public void digest() throws Exception {
+        final File file = tmp.newFile("a.js");
+        Files.writeString(file.toPath(), "abc");
+        assertThat(FileContent.read(file.toPath()).digest(), is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+    }
+
+    private static CharSequence read(File file) throws Exception {
+        final List<String> chunks = new ArrayList<>();
+        final CharSequence[] result = new CharSequence[1];
+        FileContent.read(file.toPath()).chunks(FileContent.DEFAULT_CHUNK_SIZE, (text, ownedStart, ownedEnd) -> {
+            assertThat(ownedStart, is(0));
+            assertThat(ownedEnd, is(text.length()));
+            chunks.add(text.toString());
+            result[0] = text;
+        });
+        assertThat(chunks.size(), is(1));
+        return result[0];
+    }
+
+    private static List<Scanner.Match> scan(File file, Options options) throws Exception {
+        final List<Scanner.Match> matches = new ArrayList<>();
+        Scanner.visitFile(file, new ScanContext(options), matches::addAll, matches::addAll);
+        return matches;
+    }
+
+    private static List<String> describe(List<Scanner.Match> matches) {
+        return matches.stream().map(m -> m.title + ":" + m.getLine() + ":" + m.getColumn() + ":" + m.match).collect(Collectors.toList());
+    }
+}
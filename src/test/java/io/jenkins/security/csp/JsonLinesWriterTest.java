@@ -0,0 +1,29 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JsonLinesWriterTest {
+    @Test
+    public void writesOneObjectPerLine() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonLinesWriter writer = new JsonLinesWriter(out);
+        writer.write(List.of(new Scanner.Match("Javascript scheme", "<a href='javascript:go()'>", new File("index.jelly"), 2, 1)));
+        assertThat(out.toString(StandardCharsets.UTF_8), is("{\"title\":\"Javascript scheme\",\"file\":\"index.jelly\",\"line\":2,\"column\":1,\"match\":\"<a href='javascript:go()'>\"}\n"));
+        writer.write(List.of(new Scanner.Match("Inline Script Block", "<script>\n\"ä\"\u2028</script>", new File("x.jelly"), 3, 5)));
+        writer.close();
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")[1], is("{\"title\":\"Inline Script Block\",\"file\":\"x.jelly\",\"line\":3,\"column\":5,\"match\":\"<script>\\n\\\"ä\\\"\\u2028</script>\"}"));
+    }
+
+    @Test
+    public void quote() {
+        assertThat(JsonLinesWriter.quote(""), is("\"\""));
+        assertThat(JsonLinesWriter.quote("a\\b\"c\r\t\u0001"), is("\"a\\\\b\\\"c\\r\\t\\u0001\""));
+    }
+}
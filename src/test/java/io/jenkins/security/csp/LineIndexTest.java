@@ -0,0 +1,52 @@
+package io.jenkins.security.csp;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LineIndexTest {
+    private static final Pattern LINE_BREAK = Pattern.compile("\\R");
+
+    @Test
+    public void lines() {
+        final LineIndex index = new LineIndex("a\nb\r\nc\rd e");
+        assertThat(index.getLine(0), is(1L));
+        assertThat(index.getLine(1), is(1L));
+        assertThat(index.getLine(2), is(2L));
+        assertThat(index.getLine(5), is(3L));
+        assertThat(index.getLine(7), is(4L));
+        assertThat(index.getLine(9), is(5L));
+    }
+
+    @Test
+    public void columns() {
+        final LineIndex index = new LineIndex("abc\r\n  def\n\nx");
+        assertThat(index.getColumn(0), is(1));
+        assertThat(index.getColumn(2), is(3));
+        assertThat(index.getColumn(7), is(3));
+        assertThat(index.getColumn(12), is(1));
+    }
+
+    @Test
+    public void sameAsCountingLineBreaks() {
+        final char[] alphabet = {'a', 'b', ' ', '\n', '\r', '\u000B', '\u000C', '\u0085', ' ', ' '};
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(100);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            final LineIndex index = new LineIndex(text);
+            for (int offset = 0; offset <= length; offset++) {
+                final long expected = LINE_BREAK.matcher(text.substring(0, offset)).results().count() + 1;
+                assertThat(text.toString(), index.getLine(offset), is(expected));
+                assertThat(text.toString(), LineIndex.getLine(text, offset), is(expected));
+                assertThat(text.toString(), LineIndex.getColumn(text, offset), is(index.getColumn(offset)));
+            }
+        }
+    }
+}
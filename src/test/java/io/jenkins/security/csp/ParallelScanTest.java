@@ -0,0 +1,132 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+public class ParallelScanTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void scansTreeInParallel() throws Exception {
+        final File root = tmp.newFolder("plugin");
+        for (int i = 0; i < 20; i++) {
+            write(root, "src/main/resources/p" + i + "/index.jelly", "<div>\n<a href='javascript:void(0)'>x</a>\n</div>");
+            write(root, "src/main/webapp/js/s" + i + ".js", "var x = 1;\nvar y = eval(x);\n");
+        }
+        write(root, "src/main/java/Foo.java", "String s = \"<p onclick=\\\"go()\\\">\";");
+        write(root, "target/classes/index.jelly", "<a href='javascript:void(0)'>x</a>");
+        write(root, "node_modules/foo/index.js", "eval(x)");
+
+        final List<Scanner.Match> javaMatches = new ArrayList<>();
+        final List<Scanner.Match> matches = scan(root, javaMatches);
+        assertThat(matches.size(), is(40));
+        assertThat(matches.stream().filter(m -> m.file.getPath().contains("target") || m.file.getPath().contains("node_modules")).collect(Collectors.toList()), empty());
+        for (int i = 1; i < matches.size(); i++) {
+            assertThat(Scanner.MATCH_ORDER.compare(matches.get(i - 1), matches.get(i)) <= 0, is(true));
+        }
+        assertThat(javaMatches.stream().map(m -> m.title).collect(Collectors.toList()), contains("Inline Event Handler (Java)"));
+    }
+
+    @Test
+    public void sameOutputAsSequentialScan() throws Exception {
+        final List<String> paths = new ArrayList<>();
+        for (int p = 0; p < 3; p++) {
+            final File root = tmp.newFolder("plugin" + p);
+            for (int i = 0; i < 10; i++) {
+                write(root, "src/main/resources/p" + i + "/index.jelly", "<div>\n<a href='javascript:a()'>x</a><a href='javascript:b()'>y</a>\n</div>");
+                write(root, "src/main/webapp/js/s" + i + ".js", "var x = 1;\nvar y = eval(x);\n");
+                write(root, "src/main/java/p" + i + "/Foo.java", "String s = \"<p onclick=\\\"go()\\\">\";\nString t = \"<script>x</script>\";");
+            }
+            paths.add(root.getPath());
+        }
+        paths.add(new File(tmp.getRoot(), "plugin0/src/main/java/p0/Foo.java").getPath());
+
+        final List<Scanner.Match> sequential = new ArrayList<>();
+        Scanner.scanSequentially(new ScanContext(Options.parse(paths.toArray(new String[0]))), sequential::addAll);
+        final List<String> args = new ArrayList<>(List.of("--threads", "4"));
+        args.addAll(paths);
+        final List<Scanner.Match> parallel = new ArrayList<>();
+        Scanner.scanInParallel(new ScanContext(Options.parse(args.toArray(new String[0]))), parallel::addAll);
+
+        assertThat(sequential.size(), is(3 * 10 * 5 + 2));
+        assertThat(parallel, is(inJavaMatchOrder(sequential)));
+    }
+
+    /**
+     * Sorts each run of consecutive matches in {@code .java} files by {@link Scanner#JAVA_MATCH_ORDER}, as documented
+     * for {@code --threads}.
+     */
+    private static List<Scanner.Match> inJavaMatchOrder(List<Scanner.Match> matches) {
+        final List<Scanner.Match> result = new ArrayList<>(matches);
+        int start = 0;
+        while (start < result.size()) {
+            int end = start;
+            while (end < result.size() && result.get(end).file.getName().endsWith(".java")) {
+                end++;
+            }
+            result.subList(start, end).sort(Scanner.JAVA_MATCH_ORDER);
+            start = end + 1;
+        }
+        return result;
+    }
+
+    @Test
+    public void outputIsDeterministic() throws Exception {
+        final File root = tmp.newFolder("plugin");
+        for (int i = 0; i < 10; i++) {
+            write(root, "dir" + i + "/index.jelly", "<a href='javascript:a()'>x</a><a href='javascript:b()'>y</a>");
+        }
+        final List<String> expected = scan(root).stream().map(m -> m.file + m.match).collect(Collectors.toList());
+        for (int i = 0; i < 5; i++) {
+            assertThat(scan(root).stream().map(m -> m.file + m.match).collect(Collectors.toList()), is(expected));
+        }
+    }
+
+    @Test
+    public void excludedRoot() throws Exception {
+        final File root = tmp.newFolder("target");
+        write(root, "index.jelly", "<a href='javascript:void(0)'>x</a>");
+        assertThat(scan(root), empty());
+    }
+
+    private static List<Scanner.Match> scan(File root) throws IOException {
+        return scan(root, new ArrayList<>());
+    }
+
+    /**
+     * Returns the sorted matches, like text output does.
+     */
+    private static List<Scanner.Match> scan(File root, List<Scanner.Match> javaMatches) throws IOException {
+        final List<Scanner.Match> matches = new ArrayList<>();
+        final SortingWriter sorted = new SortingWriter(matches::addAll, Scanner.MATCH_ORDER);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelScan(root, new ScanContext(new Options()), sorted, Collections.synchronizedList(javaMatches)::addAll).start(pool).join();
+        } finally {
+            pool.shutdown();
+        }
+        sorted.close();
+        return matches;
+    }
+
+    private static void write(File root, String path, String content) throws IOException {
+        final File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), content);
+    }
+}
@@ -0,0 +1,74 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PatternSetTest {
+    private static final String[] FRAGMENTS = {
+            "<", ">", "\"", "'", "\\\"", " ", "\n", "=", "(", ")", ".", "/", "x", "Y", "0",
+            "on", "ON", "onclick", "onClick", "onload", "onloadeddata", "button", "<p ", "<a href=",
+            "<script", "<SCRIPT", "<script>", "</script>", "<script src='a'/>", "<scripts>",
+            "javascript:", "JavaScript:", "checkUrl=", "checkurl=", "eval", "geval", "EVAL", "evaluate",
+            "FormApply.applyResponse(", "formapply.applyresponse(", "é", " ",
+    };
+
+    @Test
+    public void literals() {
+        final LiteralPrefilter prefilter = new LiteralPrefilter(List.of("on", "eval", "<script", "script"));
+        final LiteralPrefilter.Hits[] hits = prefilter.scan("Onion <SCRIPT> geval(éon)");
+        assertThat(offsets(hits[0]), is(List.of(0, 3, 22)));
+        assertThat(offsets(hits[1]), is(List.of(16)));
+        assertThat(offsets(hits[2]), is(List.of(6)));
+        assertThat(offsets(hits[3]), is(List.of(7)));
+    }
+
+    @Test
+    public void sameAsApplyingEachPattern() {
+        final Random random = new Random(1234);
+        for (int i = 0; i < 3000; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            for (Map<String, Pattern> patterns : List.of(Scanner.JELLY_PATTERNS, Scanner.JAVA_PATTERNS, Scanner.JS_PATTERNS)) {
+                assertThat(text.toString(), describe(Scanner.matchRegexes(patterns, text.toString(), new File("dummy"))), is(applyEachPattern(patterns, text.toString())));
+            }
+        }
+    }
+
+    private static List<String> applyEachPattern(Map<String, Pattern> patterns, String text) {
+        final List<String> results = new ArrayList<>();
+        patterns.forEach((title, pattern) -> {
+            final Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                final long line = Pattern.compile("\\R").matcher(text.substring(0, matcher.start())).results().count() + 1;
+                results.add(title + ":" + line + ":" + matcher.group());
+            }
+        });
+        return results;
+    }
+
+    private static List<String> describe(List<Scanner.Match> matches) {
+        final List<String> results = new ArrayList<>();
+        matches.forEach(m -> results.add(m.title + ":" + m.getLine() + ":" + m.match));
+        return results;
+    }
+
+    private static List<Integer> offsets(LiteralPrefilter.Hits hits) {
+        final List<Integer> offsets = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            offsets.add(hits.get(i));
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,41 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+
+public class SarifWriterTest {
+    @Test
+    public void writesLogIncrementally() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SarifWriter writer = new SarifWriter(out, List.of("(g)eval Call", "Javascript scheme"));
+        assertThat(out.toString(StandardCharsets.UTF_8), containsString("\"rules\":[{\"id\":\"(g)eval Call\",\"shortDescription\":{\"text\":\"(g)eval Call\"}},{\"id\":\"Javascript scheme\""));
+
+        writer.write(List.of(new Scanner.Match("Javascript scheme", "<a href='javascript:go()'>", new File("my plugin/index.jelly"), 2, 3)));
+        assertThat(out.toString(StandardCharsets.UTF_8), endsWith("\"results\":[\n{\"ruleId\":\"Javascript scheme\",\"level\":\"warning\",\"message\":{\"text\":\"Javascript scheme\"},"
+                + "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"my%20plugin/index.jelly\"},"
+                + "\"region\":{\"startLine\":2,\"startColumn\":3,\"snippet\":{\"text\":\"<a href='javascript:go()'>\"}}}}]}"));
+
+        writer.write(List.of(new Scanner.Match("(g)eval Call", " eval(", new File("foo.hpi!/x.js"), 1, 1)));
+        writer.close();
+        final String log = out.toString(StandardCharsets.UTF_8);
+        assertThat(log, containsString("}]},\n{\"ruleId\":\"(g)eval Call\""));
+        assertThat(log, containsString("\"uri\":\"foo.hpi!/x.js\""));
+        assertThat(log, endsWith("}]}\n]}]}\n"));
+    }
+
+    @Test
+    public void emptyLog() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SarifWriter(out, List.of()).close();
+        assertThat(out.toString(StandardCharsets.UTF_8), is("{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{"
+                + "\"name\":\"csp-scanner\",\"informationUri\":\"https://github.com/daniel-beck/csp-scanner\",\"rules\":[]}},\"results\":[\n\n]}]}\n"));
+    }
+}
@@ -0,0 +1,140 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+public class ScanCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void unchangedFilesAreNotRead() throws Exception {
+        final File file = tmp.newFile("index.jelly");
+        final FileTime modified = FileTime.from(System.currentTimeMillis() - 60_000, TimeUnit.MILLISECONDS);
+        write(file, "<a href='javascript:one()'>", modified);
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+
+        assertThat(scan(file, cacheDir), contains("javascript:one()"));
+
+        // Same size and modification time, so the cached result is used
+        write(file, "<a href='javascript:two()'>", modified);
+        assertThat(scan(file, cacheDir), contains("javascript:one()"));
+
+        // Different modification time
+        write(file, "<a href='javascript:two()'>", FileTime.from(System.currentTimeMillis() - 30_000, TimeUnit.MILLISECONDS));
+        assertThat(scan(file, cacheDir), contains("javascript:two()"));
+    }
+
+    @Test
+    public void unchangedContent() throws Exception {
+        final File file = tmp.newFile("index.jelly");
+        write(file, "<a href='javascript:one()'>", FileTime.from(System.currentTimeMillis() - 60_000, TimeUnit.MILLISECONDS));
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+        assertThat(scan(file, cacheDir), contains("javascript:one()"));
+
+        final FileTime modified = FileTime.from(System.currentTimeMillis() - 30_000, TimeUnit.MILLISECONDS);
+        Files.setLastModifiedTime(file.toPath(), modified);
+        final ScanCache cache = ScanCache.load(cacheDir, "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES);
+        final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        assertThat(cache.get(file.toPath(), attrs), nullValue());
+        assertThat(cache.get(file.toPath(), attrs, FileContent.read(file.toPath()).digest()).size(), is(1));
+        // Updated to the new modification time
+        assertThat(cache.get(file.toPath(), attrs).size(), is(1));
+    }
+
+    @Test
+    public void recentlyModifiedFilesAreVerified() throws Exception {
+        final File file = tmp.newFile("index.jelly");
+        write(file, "<a href='javascript:one()'>", FileTime.fromMillis(System.currentTimeMillis()));
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+        assertThat(scan(file, cacheDir), contains("javascript:one()"));
+
+        final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        final ScanCache cache = ScanCache.load(cacheDir, "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES);
+        assertThat(cache.get(file.toPath(), attrs), nullValue());
+    }
+
+    @Test
+    public void fingerprintChange() throws Exception {
+        final File file = tmp.newFile("index.jelly");
+        write(file, "<a href='javascript:one()'>", FileTime.from(System.currentTimeMillis() - 60_000, TimeUnit.MILLISECONDS));
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+        scan(file, cacheDir);
+        assertThat(ScanCache.load(cacheDir, "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES).size(), is(1));
+        assertThat(ScanCache.load(cacheDir, "other", ScanCache.DEFAULT_MAX_ENTRIES).size(), is(0));
+    }
+
+    @Test
+    public void fingerprintDependsOnOptions() {
+        final Options options = new Options();
+        final String fingerprint = Scanner.fingerprint(options);
+        assertThat(Scanner.fingerprint(new Options()), is(fingerprint));
+        options.chunkSize = 1024;
+        assertThat(Scanner.fingerprint(options).equals(fingerprint), is(false));
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        final Path cacheDir = tmp.newFolder("cache").toPath();
+        final List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final File file = tmp.newFile("file" + i + ".js");
+            write(file, "eval(" + i + ")", FileTime.from(System.currentTimeMillis() - 60_000, TimeUnit.MILLISECONDS));
+            files.add(file);
+        }
+
+        ScanCache cache = ScanCache.load(cacheDir, "fingerprint", 3);
+        for (File file : files) {
+            put(cache, file);
+        }
+        cache.save();
+        assertThat(ScanCache.load(cacheDir, "fingerprint", 3).size(), is(3));
+
+        // Entries not used for a while are evicted
+        cache = ScanCache.load(cacheDir, "fingerprint", 100);
+        put(cache, files.get(0));
+        cache.save();
+        for (int i = 1; i < ScanCache.MAX_UNUSED_RUNS; i++) {
+            cache = ScanCache.load(cacheDir, "fingerprint", 100);
+            cache.get(files.get(0).toPath(), Files.readAttributes(files.get(0).toPath(), BasicFileAttributes.class));
+            cache.save();
+        }
+        assertThat(ScanCache.load(cacheDir, "fingerprint", 100).size(), is(1));
+    }
+
+    private static void put(ScanCache cache, File file) throws Exception {
+        final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        cache.put(file.toPath(), attrs, FileContent.read(file.toPath()).digest(), List.of());
+    }
+
+    private static List<String> scan(File file, Path cacheDir) throws Exception {
+        final ScanCache cache = ScanCache.load(cacheDir, "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES);
+        final List<Scanner.Match> matches = new ArrayList<>();
+        Scanner.visitFile(file, new ScanContext(new Options(), cache), matches::addAll, matches::addAll);
+        cache.save();
+        for (Scanner.Match match : matches) {
+            assertThat(match.file, is(file));
+        }
+        return matches.stream().map(m -> m.match.substring(9, m.match.length() - 2)).collect(Collectors.toList());
+    }
+
+    private static void write(File file, String content, FileTime modified) throws Exception {
+        Files.writeString(file.toPath(), content);
+        Files.setLastModifiedTime(file.toPath(), modified);
+    }
+}
@@ -0,0 +1,84 @@
+package io.jenkins.security.csp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThrows;
+
+public class ScanMetricsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void deadline() {
+        final CharSequence text = new DeadlineCharSequence("a".repeat(100_000), System.nanoTime() - 1);
+        assertThat(text.length(), is(100_000));
+        assertThat(text.subSequence(1, 3).toString(), is("aa"));
+        assertThrows(DeadlineCharSequence.DeadlineExceededException.class, () -> Pattern.compile("b").matcher(text).find());
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        final File jelly = write("index.jelly", "<a href='javascript:one()'>\n<a href='javascript:two()' onclick='x()'>");
+        final File js = write("script.js", "x = eval(y);");
+        final Options options = new Options();
+        options.metrics = true;
+        final ScanContext context = new ScanContext(options);
+        Scanner.visitFile(jelly, context, found -> { }, found -> { });
+        Scanner.visitFile(js, context, found -> { }, found -> { });
+
+        final String report = print(context.metrics);
+        assertThat(report, containsString(String.format("%-30s %8d %14d %8d", "Javascript scheme", 1, jelly.length(), 2)));
+        assertThat(report, containsString(String.format("%-30s %8d %14d %8d", "Inline Event Handler", 1, jelly.length(), 1)));
+        assertThat(report, containsString(String.format("%-30s %8d %14d %8d", "(g)eval Call", 1, js.length(), 1)));
+        assertThat(report, containsString(String.format("%-30s %8d %14d %8d", ".jelly", 1, jelly.length(), 3)));
+        assertThat(report, containsString(String.format("%-30s %8d %14d %8d", ".js", 1, js.length(), 1)));
+        assertThat(report, containsString(" bytes  " + jelly));
+        assertThat(report, containsString(" bytes  " + js));
+    }
+
+    @Test
+    public void timeBudget() throws Exception {
+        // Catastrophic backtracking: Every quote could start a match, but none can end one
+        final File file = write("Foo.java", "FormApply.applyResponse(\"x\");\n" + "\\\"javascript:".repeat(2000) + "\nFormApply.applyResponse(\"y\");\n");
+        final Options options = new Options();
+        options.timeBudgetMillis = 100;
+        final ScanContext context = new ScanContext(options, ScanCache.load(tmp.newFolder().toPath(), "fingerprint", ScanCache.DEFAULT_MAX_ENTRIES));
+        final List<Scanner.Match> matches = new ArrayList<>();
+        final long started = System.nanoTime();
+        Scanner.visitFile(file, context, matches::addAll, matches::addAll);
+
+        assertThat((System.nanoTime() - started) / 1_000_000, lessThan(10_000L));
+        assertThat(matches.stream().map(m -> m.title + ":" + m.getLine()).collect(Collectors.toList()),
+                is(List.of("FormApply#applyResponse:1", "FormApply#applyResponse:3")));
+        assertThat(print(context.metrics), containsString(String.format("%-30s %8d %14d %8d", "Javascript scheme (Java)", 1, file.length(), 0)));
+        // Incomplete results are not cached
+        assertThat(context.cache.size(), is(0));
+    }
+
+    private static String print(ScanMetrics metrics) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.print(new PrintStream(out, true, StandardCharsets.UTF_8));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private File write(String name, String content) throws Exception {
+        final File file = new File(tmp.getRoot(), name);
+        Files.writeString(file.toPath(), content);
+        return file;
+    }
+}
@@ -1,6 +1,9 @@
 package io.jenkins.security.csp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -116,6 +119,29 @@ public class ScannerTest {
         assertMatch(doubleQuote, Scanner.JAVA_PATTERNS, doubleQuote);
     }
 
+    @Test
+    public void groupedMatches() {
+        final List<Scanner.Match> matches = List.of(
+                new Scanner.Match("(g)eval Call", "eval(x)", new File("a.js"), 2, 1),
+                new Scanner.Match("(g)eval Call", "eval(x)", new File("b.js"), 2, 5),
+                new Scanner.Match("(g)eval Call", "eval(y)", new File("b.js"), 3, 1));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Scanner.printGroupedMatches(new PrintStream(out, true, StandardCharsets.UTF_8), matches);
+        assertThat(out.toString(StandardCharsets.UTF_8), is(String.join(System.lineSeparator(),
+                "== (g)eval Call", "File: a.js +", "File: b.js +", "Line: 2", "----", "eval(x)", "----", "",
+                "== (g)eval Call", "File: b.js +", "Line: 3", "----", "eval(y)", "----", "", "")));
+    }
+
+    @Test
+    public void lineNumbers() {
+        final List<Scanner.Match> matches = Scanner.matchRegexes(Scanner.JS_PATTERNS, "var a;\r\n\r\n  eval(a);\nb = geval(a);", new File("dummy"));
+        assertThat(matches.size(), is(2));
+        assertThat(matches.get(0).getLine(), is(3L));
+        assertThat(matches.get(0).getColumn(), is(2));
+        assertThat(matches.get(1).getLine(), is(4L));
+        assertThat(matches.get(1).getColumn(), is(4));
+    }
+
     private static void assertMatch(String haystack, Map<String, Pattern> patterns, String expectedMatch) {
         final File dummy = new File("dummy");
         final List<Scanner.Match> matches = Scanner.matchRegexes(patterns, haystack, dummy);
@@ -0,0 +1,112 @@
+package io.jenkins.security.csp;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SortingWriterTest {
+    @Test
+    public void inMemory() throws Exception {
+        final List<Scanner.Match> matches = randomMatches(new Random(1), 1000);
+        assertSorted(matches, 10_000, 0);
+    }
+
+    @Test
+    public void spillsRuns() throws Exception {
+        final List<Scanner.Match> matches = randomMatches(new Random(2), 1000);
+        assertSorted(matches, 100, 10);
+    }
+
+    @Test
+    public void mergesRunsInSeveralPasses() throws Exception {
+        final List<Scanner.Match> matches = randomMatches(new Random(3), 1000);
+        assertSorted(matches, 5, 200);
+    }
+
+    @Test
+    public void limitsBufferedText() throws Exception {
+        final List<Scanner.Match> result = new ArrayList<>();
+        final SortingWriter writer = new SortingWriter(result::addAll, Scanner.MATCH_ORDER, Integer.MAX_VALUE, 100);
+        writer.write(List.of(match("b", 1, "x".repeat(60)), match("a", 1, "x".repeat(60)), match("c", 1, "x")));
+        assertThat(writer.getRuns(), is(1));
+        writer.close();
+        assertThat(result.stream().map(m -> m.title).collect(Collectors.toList()), is(List.of("a", "b", "c")));
+    }
+
+    @Test
+    public void sharedLimit() throws Exception {
+        final SortingWriter.MemoryLimit limit = new SortingWriter.MemoryLimit(10, Long.MAX_VALUE);
+        final List<Scanner.Match> first = new ArrayList<>();
+        final List<Scanner.Match> second = new ArrayList<>();
+        final SortingWriter large = new SortingWriter(first::addAll, Scanner.MATCH_ORDER, limit);
+        final SortingWriter small = new SortingWriter(second::addAll, Scanner.MATCH_ORDER, limit);
+        final List<Scanner.Match> matches = randomMatches(new Random(5), 9).stream().distinct().collect(Collectors.toList());
+        large.write(matches);
+        assertThat(large.getRuns(), is(0));
+        // Reaching the limit writes the larger buffer to a file, not the one that was written to
+        small.write(List.of(match("a", 1, "x"), match("b", 1, "y")));
+        assertThat(large.getRuns(), is(1));
+        assertThat(small.getRuns(), is(0));
+        large.close();
+        small.close();
+        assertThat(first, is(matches.stream().sorted(Scanner.MATCH_ORDER).collect(Collectors.toList())));
+        assertThat(second, is(List.of(match("a", 1, "x"), match("b", 1, "y"))));
+    }
+
+    @Test
+    public void removesDuplicates() throws Exception {
+        final List<Scanner.Match> result = new ArrayList<>();
+        final SortingWriter writer = new SortingWriter(result::addAll, Scanner.MATCH_ORDER, 2, Long.MAX_VALUE);
+        writer.write(List.of(match("a", 1, "x"), match("b", 1, "x"), match("a", 1, "x"), match("a", 1, "y")));
+        writer.close();
+        assertThat(result, is(List.of(match("a", 1, "x"), match("a", 1, "y"), match("b", 1, "x"))));
+    }
+
+    @Test
+    public void matchOrder() {
+        // Same order as comparing the strings previously used as sort keys
+        final Comparator<Scanner.Match> expected = Comparator.comparing(m -> m.title + m.file + m.getLine());
+        final List<Scanner.Match> matches = randomMatches(new Random(4), 300);
+        for (Scanner.Match a : matches) {
+            for (Scanner.Match b : matches) {
+                final int comparison = Integer.signum(expected.compare(a, b));
+                if (comparison != 0) {
+                    assertThat(a + " " + b, Integer.signum(Scanner.MATCH_ORDER.compare(a, b)), is(comparison));
+                }
+            }
+        }
+    }
+
+    private static void assertSorted(List<Scanner.Match> matches, int maxBufferedMatches, int expectedRuns) throws Exception {
+        final List<Scanner.Match> result = new ArrayList<>();
+        final SortingWriter writer = new SortingWriter(result::addAll, Scanner.MATCH_ORDER, maxBufferedMatches, Long.MAX_VALUE);
+        for (int i = 0; i < matches.size(); i += 7) {
+            writer.write(matches.subList(i, Math.min(i + 7, matches.size())));
+        }
+        assertThat(writer.getRuns(), is(expectedRuns));
+        writer.close();
+        assertThat(result, is(matches.stream().distinct().sorted(Scanner.MATCH_ORDER).collect(Collectors.toList())));
+    }
+
+    private static List<Scanner.Match> randomMatches(Random random, int count) {
+        final List<String> titles = List.of("Inline Script Block", "Inline Script Block (Java)", "Javascript scheme", "a");
+        final List<Scanner.Match> matches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            matches.add(new Scanner.Match(titles.get(random.nextInt(titles.size())), "match" + random.nextInt(3),
+                    new File("dir" + random.nextInt(3) + "/file" + (random.nextBoolean() ? "" : random.nextInt(20))),
+                    1 + random.nextInt(random.nextBoolean() ? 20 : 100_000), random.nextInt(3)));
+        }
+        return matches;
+    }
+
+    private static Scanner.Match match(String title, long line, String match) {
+        return new Scanner.Match(title, match, new File("file"), line, 1);
+    }
+}